@@ -0,0 +1,34 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.List;
+
+/** Queue operations applied to many messages of a queue at once. */
+public interface BulkQueueDAO extends QueueDAO {
+
+    /**
+     * Acknowledges many messages of a queue.
+     *
+     * @return the ids of the messages that were acknowledged
+     */
+    List<String> ack(String queueName, List<String> messageIds);
+
+    /** Removes many messages of a queue. */
+    void remove(String queueName, List<String> messageIds);
+
+    /**
+     * Hands popped messages back to their queue, so that polls see them again as soon as they are
+     * due. Messages that are not popped are left as they are.
+     */
+    void release(String queueName, List<String> messageIds);
+}
@@ -0,0 +1,73 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local snapshot of the in-progress task counts used by concurrency limiters, so that tasks
+ * of a type that is clearly under its limit are admitted without a round trip to the database.
+ *
+ * <p>A snapshot is only trusted for {@code ttlMs} after it was read, and the admissions it granted
+ * are added to the snapshotted count. Admissions are only granted while that sum stays within half
+ * of the limit, leaving the other half as a margin for the admissions of the other nodes during
+ * the same interval. A ttl of zero disables the cache.
+ */
+public class InProgressCountCache {
+
+    private final long ttlMs;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    public InProgressCountCache(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * @return true when the task type is admitted from the snapshot of its in-progress count, the
+     *     admission then counts against the snapshot until it expires
+     */
+    public boolean admit(String taskDefName, int limit) {
+        if (ttlMs <= 0) {
+            return false;
+        }
+        Snapshot snapshot = snapshots.get(taskDefName);
+        if (snapshot == null || snapshot.readAt + ttlMs < System.currentTimeMillis()) {
+            return false;
+        }
+        long admitted = snapshot.admitted.incrementAndGet();
+        if (snapshot.inProgress + admitted <= limit / 2) {
+            return true;
+        }
+        snapshot.admitted.decrementAndGet();
+        return false;
+    }
+
+    /** Records the in-progress count of a task type just read from the database. */
+    public void update(String taskDefName, long inProgress) {
+        if (ttlMs > 0) {
+            snapshots.put(taskDefName, new Snapshot(inProgress, System.currentTimeMillis()));
+        }
+    }
+
+    private static class Snapshot {
+        private final long inProgress;
+        private final long readAt;
+        private final AtomicLong admitted = new AtomicLong();
+
+        private Snapshot(long inProgress, long readAt) {
+            this.inProgress = inProgress;
+            this.readAt = readAt;
+        }
+    }
+}
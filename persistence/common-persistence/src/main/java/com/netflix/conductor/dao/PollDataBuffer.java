@@ -0,0 +1,150 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.common.metadata.tasks.PollData;
+
+/**
+ * Coalesces the poll data recorded on every poll, keeping only the latest poll of each queue and
+ * domain, and hands them to the store in one batch per flush interval. Polls without a domain
+ * share the {@value #DEFAULT_DOMAIN} domain, as they do in the store.
+ *
+ * <p>Reads of this node go through the buffered polls. Other nodes see them once flushed, and the
+ * ones not flushed yet are lost if the node stops without being closed.
+ */
+public class PollDataBuffer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PollDataBuffer.class);
+
+    private static final String DEFAULT_DOMAIN = "DEFAULT";
+
+    private static final Comparator<PollData> POLL_DATA_ORDER =
+            Comparator.comparing(PollData::getQueueName)
+                    .thenComparing(
+                            PollData::getDomain, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Consumer<List<PollData>> store;
+    private final Map<Key, PollData> buffered = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * @param flushIntervalMs how often buffered polls are stored
+     * @param store stores a batch of polls, sorted by queue name and domain
+     */
+    public PollDataBuffer(long flushIntervalMs, Consumer<List<PollData>> store) {
+        this.store = store;
+        this.flushExecutor =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "poll-data-flush");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        flushExecutor.scheduleWithFixedDelay(
+                this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(PollData pollData) {
+        buffered.put(new Key(pollData.getQueueName(), pollData.getDomain()), pollData);
+    }
+
+    /** @return the buffered poll of the queue and domain, null when there is none */
+    public PollData get(String queueName, String domain) {
+        return buffered.get(new Key(queueName, domain));
+    }
+
+    /**
+     * Overlays the buffered polls on polls read from the store, the buffered ones being the latest.
+     *
+     * @param queueName only the buffered polls of this queue are added, all of them when null
+     */
+    public List<PollData> merge(List<PollData> stored, String queueName) {
+        Map<Key, PollData> merged = new LinkedHashMap<>();
+        stored.forEach(
+                pollData ->
+                        merged.put(new Key(pollData.getQueueName(), pollData.getDomain()), pollData));
+        buffered.forEach(
+                (key, pollData) -> {
+                    if (queueName == null || queueName.equals(key.queueName)) {
+                        merged.put(key, pollData);
+                    }
+                });
+        return new ArrayList<>(merged.values());
+    }
+
+    /** Stores the buffered polls, keeping the ones that could not be stored for the next flush. */
+    public void flush() {
+        Map<Key, PollData> flushed = new LinkedHashMap<>(buffered);
+        if (flushed.isEmpty()) {
+            return;
+        }
+        List<PollData> batch = new ArrayList<>(flushed.values());
+        batch.sort(POLL_DATA_ORDER);
+        try {
+            store.accept(batch);
+        } catch (Exception e) {
+            LOGGER.warn("Unable to store {} buffered polls", batch.size(), e);
+            return;
+        }
+        // polls recorded during the flush are kept for the next one
+        flushed.forEach(buffered::remove);
+    }
+
+    /** Stops flushing periodically and stores the polls still buffered. */
+    @Override
+    public void close() {
+        flushExecutor.shutdownNow();
+        flush();
+    }
+
+    private static class Key {
+        private final String queueName;
+        private final String domain;
+
+        private Key(String queueName, String domain) {
+            this.queueName = queueName;
+            this.domain = domain == null ? DEFAULT_DOMAIN : domain;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return queueName.equals(key.queueName) && domain.equals(key.domain);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queueName, domain);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.core.events.queue.Message;
+
+/**
+ * Serves small polls from messages popped ahead of time in a larger batch.
+ *
+ * <p>Prefetched messages are popped from the underlying queue, so they are leased to this node
+ * until they are served. Messages that could not be served within {@code maxAgeMs} are released
+ * back to the queue, as are all of them on {@link #close()}. The max age
+ * must stay well below the unack lease of the underlying DAO, so that a prefetched message is never
+ * redelivered elsewhere while still buffered.
+ */
+public class PrefetchingQueueDAO implements BulkQueueDAO, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingQueueDAO.class);
+
+    private final BulkQueueDAO queueDAO;
+    private final int prefetchSize;
+    private final long maxAgeMs;
+    private final Map<String, Deque<PrefetchedMessage>> buffers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService releaseExecutor;
+
+    public PrefetchingQueueDAO(BulkQueueDAO queueDAO, int prefetchSize, long maxAgeMs) {
+        this.queueDAO = queueDAO;
+        this.prefetchSize = prefetchSize;
+        this.maxAgeMs = maxAgeMs;
+
+        this.releaseExecutor =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "queue-prefetch-release");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        long releaseInterval = Math.max(maxAgeMs / 2, 100);
+        releaseExecutor.scheduleWithFixedDelay(
+                this::releaseExpired, releaseInterval, releaseInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<String> pop(String queueName, int count, int timeout) {
+        return pollMessages(queueName, count, timeout).stream()
+                .map(Message::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Message> pollMessages(String queueName, int count, int timeout) {
+        List<Message> messages = new ArrayList<>(count);
+        List<Message> expired = new ArrayList<>();
+        Deque<PrefetchedMessage> buffer = buffer(queueName);
+        synchronized (buffer) {
+            long now = System.currentTimeMillis();
+            while (messages.size() < count && !buffer.isEmpty()) {
+                PrefetchedMessage prefetched = buffer.pollFirst();
+                if (now - prefetched.prefetchedAt < maxAgeMs) {
+                    messages.add(prefetched.message);
+                } else {
+                    expired.add(prefetched.message);
+                }
+            }
+        }
+        releaseMessages(queueName, expired);
+        if (messages.size() >= count) {
+            return messages;
+        }
+
+        // claim enough for this poll and the following ones without waiting, as the underlying
+        // queue would otherwise block until the whole batch is ready
+        int claimCount = Math.max(count - messages.size(), prefetchSize);
+        List<Message> claimed = queueDAO.pollMessages(queueName, claimCount, 0);
+        long prefetchedAt = System.currentTimeMillis();
+        for (Message message : claimed) {
+            if (messages.size() < count) {
+                messages.add(message);
+            } else {
+                synchronized (buffer) {
+                    buffer.addLast(new PrefetchedMessage(message, prefetchedAt));
+                }
+            }
+        }
+        if (messages.isEmpty() && timeout > 0) {
+            // nothing is ready, wait for what this poll asked for only
+            messages.addAll(queueDAO.pollMessages(queueName, count, timeout));
+        }
+        return messages;
+    }
+
+    @Override
+    public void push(String queueName, String messageId, long offsetTimeInSecond) {
+        queueDAO.push(queueName, messageId, offsetTimeInSecond);
+    }
+
+    @Override
+    public void push(String queueName, String messageId, int priority, long offsetTimeInSecond) {
+        queueDAO.push(queueName, messageId, priority, offsetTimeInSecond);
+    }
+
+    @Override
+    public void push(String queueName, List<Message> messages) {
+        queueDAO.push(queueName, messages);
+    }
+
+    @Override
+    public boolean pushIfNotExists(String queueName, String messageId, long offsetTimeInSecond) {
+        return queueDAO.pushIfNotExists(queueName, messageId, offsetTimeInSecond);
+    }
+
+    @Override
+    public boolean pushIfNotExists(
+            String queueName, String messageId, int priority, long offsetTimeInSecond) {
+        return queueDAO.pushIfNotExists(queueName, messageId, priority, offsetTimeInSecond);
+    }
+
+    @Override
+    public void remove(String queueName, String messageId) {
+        evict(queueName, messageId);
+        queueDAO.remove(queueName, messageId);
+    }
+
+    @Override
+    public void remove(String queueName, List<String> messageIds) {
+        evict(queueName, messageIds);
+        queueDAO.remove(queueName, messageIds);
+    }
+
+    @Override
+    public int getSize(String queueName) {
+        return queueDAO.getSize(queueName);
+    }
+
+    @Override
+    public boolean ack(String queueName, String messageId) {
+        evict(queueName, messageId);
+        return queueDAO.ack(queueName, messageId);
+    }
+
+    @Override
+    public List<String> ack(String queueName, List<String> messageIds) {
+        evict(queueName, messageIds);
+        return queueDAO.ack(queueName, messageIds);
+    }
+
+    @Override
+    public void release(String queueName, List<String> messageIds) {
+        evict(queueName, messageIds);
+        queueDAO.release(queueName, messageIds);
+    }
+
+    @Override
+    public boolean setUnackTimeout(String queueName, String messageId, long unackTimeout) {
+        evict(queueName, messageId);
+        return queueDAO.setUnackTimeout(queueName, messageId, unackTimeout);
+    }
+
+    @Override
+    public void flush(String queueName) {
+        Deque<PrefetchedMessage> buffer = buffer(queueName);
+        synchronized (buffer) {
+            buffer.clear();
+        }
+        queueDAO.flush(queueName);
+    }
+
+    @Override
+    public Map<String, Long> queuesDetail() {
+        return queueDAO.queuesDetail();
+    }
+
+    @Override
+    public Map<String, Map<String, Map<String, Long>>> queuesDetailVerbose() {
+        return queueDAO.queuesDetailVerbose();
+    }
+
+    @Override
+    public void processUnacks(String queueName) {
+        queueDAO.processUnacks(queueName);
+    }
+
+    @Override
+    public boolean resetOffsetTime(String queueName, String messageId) {
+        evict(queueName, messageId);
+        return queueDAO.resetOffsetTime(queueName, messageId);
+    }
+
+    @Override
+    public boolean containsMessage(String queueName, String messageId) {
+        return queueDAO.containsMessage(queueName, messageId);
+    }
+
+    /** Stops prefetching and hands all buffered messages back to their queues. */
+    @Override
+    public void close() {
+        releaseExecutor.shutdownNow();
+        releaseBuffered(Long.MAX_VALUE);
+    }
+
+    private Deque<PrefetchedMessage> buffer(String queueName) {
+        return buffers.computeIfAbsent(queueName, name -> new ArrayDeque<>());
+    }
+
+    private void evict(String queueName, String messageId) {
+        evict(queueName, Collections.singleton(messageId));
+    }
+
+    private void evict(String queueName, Collection<String> messageIds) {
+        Deque<PrefetchedMessage> buffer = buffers.get(queueName);
+        if (buffer != null) {
+            Set<String> evicted = new HashSet<>(messageIds);
+            synchronized (buffer) {
+                buffer.removeIf(prefetched -> evicted.contains(prefetched.message.getId()));
+            }
+        }
+    }
+
+    private void releaseExpired() {
+        releaseBuffered(System.currentTimeMillis() - maxAgeMs);
+    }
+
+    /** Hands back the buffered messages prefetched at or before the given time. */
+    private void releaseBuffered(long prefetchedUntil) {
+        buffers.forEach(
+                (queueName, buffer) -> {
+                    List<Message> released = new ArrayList<>();
+                    synchronized (buffer) {
+                        Iterator<PrefetchedMessage> iterator = buffer.iterator();
+                        while (iterator.hasNext()) {
+                            PrefetchedMessage prefetched = iterator.next();
+                            if (prefetched.prefetchedAt <= prefetchedUntil) {
+                                iterator.remove();
+                                released.add(prefetched.message);
+                            }
+                        }
+                    }
+                    releaseMessages(queueName, released);
+                });
+    }
+
+    private void releaseMessages(String queueName, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            queueDAO.release(
+                    queueName, messages.stream().map(Message::getId).collect(Collectors.toList()));
+        } catch (Exception e) {
+            // the leases of the messages eventually expire in the underlying queue
+            LOGGER.warn(
+                    "Unable to release {} prefetched messages of queue {}",
+                    messages.size(),
+                    queueName,
+                    e);
+        }
+    }
+
+    private static class PrefetchedMessage {
+        private final Message message;
+        private final long prefetchedAt;
+
+        private PrefetchedMessage(Message message, long prefetchedAt) {
+            this.message = message;
+            this.prefetchedAt = prefetchedAt;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node-local tokens of task rate limits, taken from the shared limit ahead of time so that
+ * evaluations of hot task types don't need a round trip to the database each.
+ *
+ * <p>Tokens are counted against the window they were taken in, so they can only be spent within
+ * that window and the ones left over when it ends are lost. A batch size of one disables the
+ * cache.
+ */
+public class RateLimitTokenCache {
+
+    private final int batchSize;
+    private final Map<String, Tokens> tokens = new ConcurrentHashMap<>();
+
+    public RateLimitTokenCache(int batchSize) {
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /** @return the number of tokens to take from the shared limit when none are left locally */
+    public int batchSize(int rateLimit) {
+        return Math.min(batchSize, rateLimit);
+    }
+
+    /** @return true when a token taken earlier within the given window was left and is now spent */
+    public boolean take(String taskDefName, long windowStart) {
+        if (batchSize <= 1) {
+            return false;
+        }
+        Tokens available = tokens.get(taskDefName);
+        return available != null
+                && available.windowStart == windowStart
+                && available.remaining.getAndDecrement() > 0;
+    }
+
+    /** Keeps the tokens taken from the shared limit beyond the one spent right away. */
+    public void put(String taskDefName, long windowStart, int granted) {
+        if (granted > 1) {
+            tokens.put(taskDefName, new Tokens(windowStart, granted - 1));
+        }
+    }
+
+    private static class Tokens {
+        private final long windowStart;
+        private final AtomicInteger remaining;
+
+        private Tokens(long windowStart, int remaining) {
+            this.windowStart = windowStart;
+            this.remaining = new AtomicInteger(remaining);
+        }
+    }
+}
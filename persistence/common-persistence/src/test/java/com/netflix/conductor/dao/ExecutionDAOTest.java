@@ -12,8 +12,10 @@
 package com.netflix.conductor.dao;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +28,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import com.netflix.conductor.common.metadata.events.EventExecution;
+import com.netflix.conductor.common.metadata.events.EventHandler;
 import com.netflix.conductor.common.metadata.tasks.TaskDef;
 import com.netflix.conductor.common.metadata.workflow.WorkflowDef;
 import com.netflix.conductor.common.metadata.workflow.WorkflowTask;
@@ -43,6 +47,13 @@ public abstract class ExecutionDAOTest {
         return (ConcurrentExecutionLimitDAO) getExecutionDAO();
     }
 
+    protected RateLimitingDAO getRateLimitingDAO() {
+        return (RateLimitingDAO) getExecutionDAO();
+    }
+
+    /** Removes the given workflows in bulk, the way the DAO under test does it. */
+    protected abstract List<String> removeWorkflows(List<String> workflowIds);
+
     @Rule public ExpectedException expectedException = ExpectedException.none();
 
     @Test
@@ -355,6 +366,115 @@ public abstract class ExecutionDAOTest {
         assertEquals(1, bytime.size());
     }
 
+    @Test
+    public void testGetEventExecutions() {
+        String messageId = UUID.randomUUID().toString();
+        for (int i : new int[] {0, 1, 3}) {
+            EventExecution execution = new EventExecution(messageId + "_" + i, messageId);
+            execution.setName("event_handler");
+            execution.setEvent("event");
+            execution.setAction(EventHandler.Action.Type.start_workflow);
+            execution.setStatus(EventExecution.Status.COMPLETED);
+            assertTrue(getExecutionDAO().addEventExecution(execution));
+        }
+
+        // executions stop at the first action without one
+        List<EventExecution> executions =
+                getExecutionDAO().getEventExecutions("event_handler", "event", messageId, 10);
+        assertEquals(
+                List.of(messageId + "_0", messageId + "_1"),
+                executions.stream().map(EventExecution::getId).collect(Collectors.toList()));
+        executions = getExecutionDAO().getEventExecutions("event_handler", "event", messageId, 1);
+        assertEquals(1, executions.size());
+        assertTrue(
+                getExecutionDAO()
+                        .getEventExecutions("other_handler", "event", messageId, 10)
+                        .isEmpty());
+    }
+
+    @Test
+    public void testExceedsLimitAcquiresSlots() {
+        List<TaskModel> tasks = createLimitedTasks("limited_task", 2, 3);
+
+        assertFalse(getConcurrentExecutionLimitDAO().exceedsLimit(tasks.get(0)));
+        assertFalse(getConcurrentExecutionLimitDAO().exceedsLimit(tasks.get(1)));
+        assertEquals(2, getExecutionDAO().getInProgressTaskCount("limited_task"));
+        assertTrue(getConcurrentExecutionLimitDAO().exceedsLimit(tasks.get(2)));
+
+        // removing a task holding a slot frees it
+        assertTrue(getExecutionDAO().removeTask(tasks.get(0).getTaskId()));
+        assertEquals(1, getExecutionDAO().getInProgressTaskCount("limited_task"));
+        assertFalse(getConcurrentExecutionLimitDAO().exceedsLimit(tasks.get(2)));
+        assertEquals(2, getExecutionDAO().getInProgressTaskCount("limited_task"));
+    }
+
+    @Test
+    public void testExceedsLimitAdmitsSlotHolderAgain() {
+        List<TaskModel> tasks = createLimitedTasks("single_slot_task", 1, 2);
+
+        assertFalse(getConcurrentExecutionLimitDAO().exceedsLimit(tasks.get(0)));
+        // a task postponed after it was admitted keeps its slot and is evaluated again
+        assertFalse(getConcurrentExecutionLimitDAO().exceedsLimit(tasks.get(0)));
+        assertEquals(1, getExecutionDAO().getInProgressTaskCount("single_slot_task"));
+        assertTrue(getConcurrentExecutionLimitDAO().exceedsLimit(tasks.get(1)));
+    }
+
+    @Test
+    public void testExceedsRateLimitPerFrequency() {
+        TaskDef taskDef = new TaskDef();
+        taskDef.setName("rate_limited_task");
+        taskDef.setRateLimitPerFrequency(2);
+        taskDef.setRateLimitFrequencyInSeconds(600);
+
+        TaskModel task = new TaskModel();
+        task.setTaskId(UUID.randomUUID().toString());
+        task.setTaskDefName("rate_limited_task");
+
+        assertFalse(getRateLimitingDAO().exceedsRateLimitPerFrequency(task, taskDef));
+        assertFalse(getRateLimitingDAO().exceedsRateLimitPerFrequency(task, taskDef));
+        assertTrue(getRateLimitingDAO().exceedsRateLimitPerFrequency(task, taskDef));
+
+        // task types are limited independently, and not at all without a rate limit
+        TaskModel other = new TaskModel();
+        other.setTaskId(UUID.randomUUID().toString());
+        other.setTaskDefName("other_task");
+        assertFalse(getRateLimitingDAO().exceedsRateLimitPerFrequency(other, taskDef));
+        taskDef.setRateLimitPerFrequency(0);
+        assertFalse(getRateLimitingDAO().exceedsRateLimitPerFrequency(task, taskDef));
+    }
+
+    @Test
+    public void testRemoveWorkflows() {
+        WorkflowDef def = new WorkflowDef();
+        def.setName("removed_workflow");
+
+        List<String> workflowIds = new ArrayList<>();
+        List<String> taskIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            WorkflowModel workflow = createTestWorkflow();
+            workflow.setWorkflowDefinition(def);
+            List<TaskModel> tasks = new ArrayList<>(workflow.getTasks());
+            getExecutionDAO().createWorkflow(workflow);
+            getExecutionDAO().createTasks(tasks);
+            workflowIds.add(workflow.getWorkflowId());
+            tasks.forEach(task -> taskIds.add(task.getTaskId()));
+        }
+        assertEquals(2, getExecutionDAO().getPendingWorkflowCount("removed_workflow"));
+
+        List<String> removed =
+                removeWorkflows(
+                        Arrays.asList(workflowIds.get(0), "missing", workflowIds.get(1)));
+        assertEquals(new HashSet<>(workflowIds), new HashSet<>(removed));
+        assertEquals(0, getExecutionDAO().getPendingWorkflowCount("removed_workflow"));
+        for (String workflowId : workflowIds) {
+            assertNull(getExecutionDAO().getWorkflow(workflowId, true));
+        }
+        for (String taskId : taskIds) {
+            assertNull(getExecutionDAO().getTask(taskId));
+        }
+        assertFalse(getExecutionDAO().removeWorkflow(workflowIds.get(0)));
+    }
+
     protected WorkflowModel createTestWorkflow() {
         WorkflowDef def = new WorkflowDef();
         def.setName("Junit Workflow");
@@ -424,6 +544,22 @@ public abstract class ExecutionDAOTest {
         return workflow;
     }
 
+    protected List<TaskModel> createTestTasks(String taskDefName, int count) {
+        String workflowId = UUID.randomUUID().toString();
+        List<TaskModel> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TaskModel task = new TaskModel();
+            task.setSeq(i + 1);
+            task.setTaskId(UUID.randomUUID().toString());
+            task.setReferenceTaskName(taskDefName + "_" + i);
+            task.setWorkflowInstanceId(workflowId);
+            task.setTaskDefName(taskDefName);
+            task.setStatus(TaskModel.Status.SCHEDULED);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
     protected List<String> generateWorkflows(WorkflowModel base, int count) {
         List<String> workflowIds = new ArrayList<>();
         for (int i = 0; i < count; i++) {
@@ -436,4 +572,18 @@ public abstract class ExecutionDAOTest {
         }
         return workflowIds;
     }
+
+    private List<TaskModel> createLimitedTasks(String taskDefName, int limit, int count) {
+        TaskDef taskDef = new TaskDef();
+        taskDef.setName(taskDefName);
+        taskDef.setConcurrentExecLimit(limit);
+        WorkflowTask workflowTask = new WorkflowTask();
+        workflowTask.setName(taskDefName);
+        workflowTask.setTaskDefinition(taskDef);
+
+        List<TaskModel> tasks = createTestTasks(taskDefName, count);
+        tasks.forEach(task -> task.setWorkflowTask(workflowTask));
+        getExecutionDAO().createTasks(tasks);
+        return tasks;
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InProgressCountCacheTest {
+
+    @Test
+    public void testAdmitsUpToHalfOfTheLimit() {
+        InProgressCountCache cache = new InProgressCountCache(60_000);
+        assertFalse(cache.admit("task1", 10));
+
+        cache.update("task1", 2);
+        assertTrue(cache.admit("task1", 10));
+        assertTrue(cache.admit("task1", 10));
+        assertTrue(cache.admit("task1", 10));
+        assertFalse(cache.admit("task1", 10));
+        assertFalse(cache.admit("task2", 10));
+
+        // a fresh snapshot drops the admissions counted against the previous one
+        cache.update("task1", 0);
+        assertTrue(cache.admit("task1", 10));
+    }
+
+    @Test
+    public void testExpiredOrDisabledCacheAdmitsNothing() throws InterruptedException {
+        InProgressCountCache disabled = new InProgressCountCache(0);
+        disabled.update("task1", 0);
+        assertFalse(disabled.admit("task1", 10));
+
+        InProgressCountCache cache = new InProgressCountCache(10);
+        cache.update("task1", 0);
+        Thread.sleep(50);
+        assertFalse(cache.admit("task1", 10));
+    }
+}
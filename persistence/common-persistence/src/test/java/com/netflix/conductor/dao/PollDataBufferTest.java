@@ -0,0 +1,100 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.netflix.conductor.common.metadata.tasks.PollData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PollDataBufferTest {
+
+    @Test
+    public void testFlushStoresLatestPollPerQueueAndDomain() {
+        List<List<PollData>> stored = new ArrayList<>();
+        PollDataBuffer buffer = new PollDataBuffer(60_000, stored::add);
+
+        buffer.record(new PollData("task1", null, "worker1", 1));
+        buffer.record(new PollData("task1", null, "worker2", 2));
+        buffer.record(new PollData("task1", "domain1", "worker1", 3));
+        buffer.record(new PollData("task2", null, "worker1", 4));
+        assertEquals("worker2", buffer.get("task1", null).getWorkerId());
+        assertEquals("worker1", buffer.get("task1", "domain1").getWorkerId());
+        assertTrue(stored.isEmpty());
+
+        buffer.flush();
+        assertEquals(1, stored.size());
+        List<PollData> batch = stored.get(0);
+        assertEquals(3, batch.size());
+        assertEquals("task1", batch.get(0).getQueueName());
+        assertNull(batch.get(0).getDomain());
+        assertEquals("worker2", batch.get(0).getWorkerId());
+        assertEquals("domain1", batch.get(1).getDomain());
+        assertEquals("task2", batch.get(2).getQueueName());
+        assertNull(buffer.get("task1", null));
+
+        buffer.flush();
+        assertEquals(1, stored.size());
+        buffer.close();
+    }
+
+    @Test
+    public void testPollsWithoutDomainShareTheDefaultDomain() {
+        List<List<PollData>> stored = new ArrayList<>();
+        PollDataBuffer buffer = new PollDataBuffer(60_000, stored::add);
+
+        buffer.record(new PollData("task1", null, "worker1", 1));
+        buffer.record(new PollData("task1", "DEFAULT", "worker2", 2));
+        assertEquals("worker2", buffer.get("task1", null).getWorkerId());
+
+        buffer.flush();
+        assertEquals(1, stored.get(0).size());
+        assertEquals("worker2", stored.get(0).get(0).getWorkerId());
+        buffer.close();
+    }
+
+    @Test
+    public void testFailedFlushKeepsPolls() {
+        PollDataBuffer buffer =
+                new PollDataBuffer(
+                        60_000,
+                        batch -> {
+                            throw new IllegalStateException("unavailable");
+                        });
+        buffer.record(new PollData("task1", null, "worker1", 1));
+        buffer.flush();
+        assertEquals("worker1", buffer.get("task1", null).getWorkerId());
+    }
+
+    @Test
+    public void testMergeOverlaysBufferedPolls() {
+        PollDataBuffer buffer = new PollDataBuffer(60_000, batch -> {});
+        buffer.record(new PollData("task1", null, "worker2", 2));
+        buffer.record(new PollData("task2", null, "worker2", 2));
+
+        List<PollData> stored =
+                Collections.singletonList(new PollData("task1", null, "worker1", 1));
+        List<PollData> merged = buffer.merge(stored, "task1");
+        assertEquals(1, merged.size());
+        assertEquals("worker2", merged.get(0).getWorkerId());
+
+        assertEquals(2, buffer.merge(stored, null).size());
+        buffer.close();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.conductor.core.events.queue.Message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PrefetchingQueueDAOTest {
+
+    private static final String QUEUE = "prefetch_test_queue";
+
+    private BulkQueueDAO queueDAO;
+    private PrefetchingQueueDAO prefetchingQueueDAO;
+
+    @Before
+    public void setUp() {
+        queueDAO = mock(BulkQueueDAO.class);
+        when(queueDAO.pollMessages(eq(QUEUE), anyInt(), anyInt()))
+                .thenReturn(messages(0, 10))
+                .thenReturn(new ArrayList<>());
+    }
+
+    @After
+    public void tearDown() {
+        prefetchingQueueDAO.close();
+    }
+
+    @Test
+    public void testPollsAreServedFromPrefetchedBatch() {
+        prefetchingQueueDAO = new PrefetchingQueueDAO(queueDAO, 10, 60_000);
+
+        for (int i = 0; i < 10; i++) {
+            List<Message> polled = prefetchingQueueDAO.pollMessages(QUEUE, 1, 100);
+            assertEquals(1, polled.size());
+            assertEquals("msg-" + i, polled.get(0).getId());
+        }
+        verify(queueDAO, times(1)).pollMessages(QUEUE, 10, 0);
+        verify(queueDAO, never()).pollMessages(QUEUE, 1, 100);
+
+        assertTrue(prefetchingQueueDAO.pollMessages(QUEUE, 1, 100).isEmpty());
+        verify(queueDAO, times(1)).pollMessages(QUEUE, 1, 100);
+        verify(queueDAO, never()).release(anyString(), anyList());
+    }
+
+    @Test
+    public void testPollWaitsOnlyForRequestedMessagesWhenNoneAreReady() {
+        when(queueDAO.pollMessages(QUEUE, 10, 0)).thenReturn(new ArrayList<>());
+        when(queueDAO.pollMessages(QUEUE, 2, 100)).thenReturn(messages(0, 1));
+        prefetchingQueueDAO = new PrefetchingQueueDAO(queueDAO, 10, 60_000);
+
+        List<Message> polled = prefetchingQueueDAO.pollMessages(QUEUE, 2, 100);
+        assertEquals(1, polled.size());
+        assertEquals("msg-0", polled.get(0).getId());
+        verify(queueDAO, never()).pollMessages(QUEUE, 10, 100);
+    }
+
+    @Test
+    public void testRemovedMessagesAreNotServed() {
+        prefetchingQueueDAO = new PrefetchingQueueDAO(queueDAO, 10, 60_000);
+
+        assertEquals("msg-0", prefetchingQueueDAO.pop(QUEUE, 1, 100).get(0));
+        prefetchingQueueDAO.remove(QUEUE, "msg-1");
+        assertEquals("msg-2", prefetchingQueueDAO.pop(QUEUE, 1, 100).get(0));
+        verify(queueDAO).remove(QUEUE, "msg-1");
+    }
+
+    @Test
+    public void testBulkAckedAndRemovedMessagesAreNotServed() {
+        prefetchingQueueDAO = new PrefetchingQueueDAO(queueDAO, 10, 60_000);
+
+        assertEquals("msg-0", prefetchingQueueDAO.pop(QUEUE, 1, 100).get(0));
+        prefetchingQueueDAO.ack(QUEUE, Arrays.asList("msg-1", "msg-2"));
+        prefetchingQueueDAO.remove(QUEUE, Arrays.asList("msg-3"));
+        assertEquals("msg-4", prefetchingQueueDAO.pop(QUEUE, 1, 100).get(0));
+        verify(queueDAO).ack(QUEUE, Arrays.asList("msg-1", "msg-2"));
+        verify(queueDAO).remove(QUEUE, Arrays.asList("msg-3"));
+    }
+
+    @Test
+    public void testExpiredPrefetchedMessagesAreReleased() {
+        prefetchingQueueDAO = new PrefetchingQueueDAO(queueDAO, 10, 50);
+
+        assertEquals(1, prefetchingQueueDAO.pollMessages(QUEUE, 1, 100).size());
+        verify(queueDAO, timeout(5_000)).release(QUEUE, ids(1, 10));
+        verify(queueDAO, times(1)).release(eq(QUEUE), anyList());
+    }
+
+    @Test
+    public void testCloseReleasesPrefetchedMessages() {
+        prefetchingQueueDAO = new PrefetchingQueueDAO(queueDAO, 10, 60_000);
+
+        assertEquals(2, prefetchingQueueDAO.pollMessages(QUEUE, 2, 100).size());
+        prefetchingQueueDAO.close();
+        verify(queueDAO).release(QUEUE, ids(2, 10));
+        verify(queueDAO, times(1)).release(eq(QUEUE), anyList());
+    }
+
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ids.add("msg-" + i);
+        }
+        return ids;
+    }
+
+    private static List<Message> messages(int from, int to) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add(new Message("msg-" + i, null, null));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimitTokenCacheTest {
+
+    @Test
+    public void testTokensAreSpentWithinTheirWindow() {
+        RateLimitTokenCache cache = new RateLimitTokenCache(3);
+        assertEquals(3, cache.batchSize(10));
+        assertEquals(2, cache.batchSize(2));
+        assertFalse(cache.take("task1", 60));
+
+        cache.put("task1", 60, 3);
+        assertFalse(cache.take("task1", 120));
+        assertTrue(cache.take("task1", 60));
+        assertTrue(cache.take("task1", 60));
+        assertFalse(cache.take("task1", 60));
+        assertFalse(cache.take("task2", 60));
+    }
+
+    @Test
+    public void testSingleTokenBatchesAreNotCached() {
+        RateLimitTokenCache cache = new RateLimitTokenCache(1);
+        assertEquals(1, cache.batchSize(10));
+        cache.put("task1", 60, 1);
+        assertFalse(cache.take("task1", 60));
+    }
+}
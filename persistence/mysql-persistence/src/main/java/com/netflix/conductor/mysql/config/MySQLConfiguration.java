@@ -24,11 +24,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.backoff.NoBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
 
+import com.netflix.conductor.dao.PrefetchingQueueDAO;
+import com.netflix.conductor.dao.QueueDAO;
 import com.netflix.conductor.mysql.dao.MySQLExecutionDAO;
 import com.netflix.conductor.mysql.dao.MySQLMetadataDAO;
 import com.netflix.conductor.mysql.dao.MySQLQueueDAO;
@@ -60,8 +63,9 @@ public class MySQLConfiguration {
     public MySQLExecutionDAO mySqlExecutionDAO(
             @Qualifier("mysqlRetryTemplate") RetryTemplate retryTemplate,
             ObjectMapper objectMapper,
-            DataSource dataSource) {
-        return new MySQLExecutionDAO(retryTemplate, objectMapper, dataSource);
+            DataSource dataSource,
+            MySQLProperties properties) {
+        return new MySQLExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
     }
 
     @Bean
@@ -73,6 +77,17 @@ public class MySQLConfiguration {
         return new MySQLQueueDAO(retryTemplate, objectMapper, dataSource);
     }
 
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "conductor.mysql.queuePrefetchEnabled", havingValue = "true")
+    public QueueDAO mySqlPrefetchingQueueDAO(
+            MySQLQueueDAO mySqlQueueDAO, MySQLProperties properties) {
+        return new PrefetchingQueueDAO(
+                mySqlQueueDAO,
+                properties.getQueuePrefetchSize(),
+                properties.getQueuePrefetchMaxAge().toMillis());
+    }
+
     @Bean
     public RetryTemplate mysqlRetryTemplate(MySQLProperties properties) {
         SimpleRetryPolicy retryPolicy = new CustomRetryPolicy();
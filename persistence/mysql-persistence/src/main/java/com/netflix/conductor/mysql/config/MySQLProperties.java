@@ -23,6 +23,38 @@ public class MySQLProperties {
 
     private Integer deadlockRetryMax = 3;
 
+    /** Serve polls from a per-queue buffer of messages popped ahead in larger batches */
+    private boolean queuePrefetchEnabled = false;
+
+    /** The number of messages popped at once to fill the prefetch buffer of a queue */
+    private int queuePrefetchSize = 100;
+
+    /**
+     * How long a prefetched message may stay buffered before it is handed back to its queue, must
+     * stay well below the unack timeout of popped messages
+     */
+    private Duration queuePrefetchMaxAge = Duration.ofSeconds(5);
+
+    /**
+     * How long the in-progress count of a task type may be served from a node-local snapshot to
+     * admit tasks of types that are clearly under their concurrency limit. Every admission is
+     * checked against the database when zero.
+     */
+    private Duration concurrencyLimitCacheDuration = Duration.ZERO;
+
+    /**
+     * The number of rate limit tokens a node takes at once for a task type, spending the extra
+     * ones locally within the same window. Every evaluation is checked against the database when
+     * one.
+     */
+    private int rateLimitTokenBatchSize = 1;
+
+    /**
+     * How often each node stores the latest poll of each task queue and domain, coalescing the
+     * polls in between into a single write. Every poll is written through when zero.
+     */
+    private Duration pollDataFlushInterval = Duration.ZERO;
+
     public Duration getTaskDefCacheRefreshInterval() {
         return taskDefCacheRefreshInterval;
     }
@@ -38,4 +70,52 @@ public class MySQLProperties {
     public void setDeadlockRetryMax(Integer deadlockRetryMax) {
         this.deadlockRetryMax = deadlockRetryMax;
     }
+
+    public boolean isQueuePrefetchEnabled() {
+        return queuePrefetchEnabled;
+    }
+
+    public void setQueuePrefetchEnabled(boolean queuePrefetchEnabled) {
+        this.queuePrefetchEnabled = queuePrefetchEnabled;
+    }
+
+    public int getQueuePrefetchSize() {
+        return queuePrefetchSize;
+    }
+
+    public void setQueuePrefetchSize(int queuePrefetchSize) {
+        this.queuePrefetchSize = queuePrefetchSize;
+    }
+
+    public Duration getQueuePrefetchMaxAge() {
+        return queuePrefetchMaxAge;
+    }
+
+    public void setQueuePrefetchMaxAge(Duration queuePrefetchMaxAge) {
+        this.queuePrefetchMaxAge = queuePrefetchMaxAge;
+    }
+
+    public Duration getConcurrencyLimitCacheDuration() {
+        return concurrencyLimitCacheDuration;
+    }
+
+    public void setConcurrencyLimitCacheDuration(Duration concurrencyLimitCacheDuration) {
+        this.concurrencyLimitCacheDuration = concurrencyLimitCacheDuration;
+    }
+
+    public int getRateLimitTokenBatchSize() {
+        return rateLimitTokenBatchSize;
+    }
+
+    public void setRateLimitTokenBatchSize(int rateLimitTokenBatchSize) {
+        this.rateLimitTokenBatchSize = rateLimitTokenBatchSize;
+    }
+
+    public Duration getPollDataFlushInterval() {
+        return pollDataFlushInterval;
+    }
+
+    public void setPollDataFlushInterval(Duration pollDataFlushInterval) {
+        this.pollDataFlushInterval = pollDataFlushInterval;
+    }
 }
@@ -17,6 +17,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
 import org.springframework.retry.support.RetryTemplate;
@@ -27,11 +28,15 @@ import com.netflix.conductor.common.metadata.tasks.TaskDef;
 import com.netflix.conductor.core.exception.NonTransientException;
 import com.netflix.conductor.dao.ConcurrentExecutionLimitDAO;
 import com.netflix.conductor.dao.ExecutionDAO;
+import com.netflix.conductor.dao.InProgressCountCache;
+import com.netflix.conductor.dao.PollDataBuffer;
 import com.netflix.conductor.dao.PollDataDAO;
+import com.netflix.conductor.dao.RateLimitTokenCache;
 import com.netflix.conductor.dao.RateLimitingDAO;
 import com.netflix.conductor.metrics.Monitors;
 import com.netflix.conductor.model.TaskModel;
 import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.mysql.config.MySQLProperties;
 import com.netflix.conductor.mysql.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -42,9 +47,34 @@ import com.google.common.collect.Lists;
 public class MySQLExecutionDAO extends MySQLBaseDAO
         implements ExecutionDAO, RateLimitingDAO, PollDataDAO, ConcurrentExecutionLimitDAO {
 
+    /** Number of workflows removed by a single transaction when removing workflows in bulk. */
+    private static final int WORKFLOW_BATCH_SIZE = 100;
+
+    private final InProgressCountCache inProgressCountCache;
+    private final RateLimitTokenCache rateLimitTokenCache;
+    private final PollDataBuffer pollDataBuffer;
+
     public MySQLExecutionDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            MySQLProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
+        this.inProgressCountCache =
+                new InProgressCountCache(properties.getConcurrencyLimitCacheDuration().toMillis());
+        this.rateLimitTokenCache = new RateLimitTokenCache(properties.getRateLimitTokenBatchSize());
+        long pollDataFlushIntervalMs = properties.getPollDataFlushInterval().toMillis();
+        this.pollDataBuffer =
+                pollDataFlushIntervalMs > 0
+                        ? new PollDataBuffer(pollDataFlushIntervalMs, this::storePollData)
+                        : null;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (pollDataBuffer != null) {
+            pollDataBuffer.close();
+        }
     }
 
     private static String dateStr(Long timeInMs) {
@@ -148,15 +178,66 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     }
 
     /**
-     * This is a dummy implementation and this feature is not for Mysql backed Conductor
+     * Evaluates the rate limit of the task type over a sliding window of its frequency, estimated
+     * from the counts of the current and the previous fixed window weighted by their overlap. The
+     * counters of a task type are locked, rolled over and incremented in one transaction, that
+     * takes a batch of tokens at once when node-local tokens are enabled.
      *
      * @param task: which needs to be evaluated whether it is rateLimited or not
      */
     @Override
     public boolean exceedsRateLimitPerFrequency(TaskModel task, TaskDef taskDef) {
+        int rateLimit =
+                taskDef == null
+                        ? task.getRateLimitPerFrequency()
+                        : taskDef.getRateLimitPerFrequency();
+        int frequencySeconds =
+                taskDef == null
+                        ? task.getRateLimitFrequencyInSeconds()
+                        : taskDef.getRateLimitFrequencyInSeconds();
+        if (rateLimit <= 0 || frequencySeconds <= 0) {
+            return false;
+        }
+
+        String taskDefName = task.getTaskDefName();
+        long now = System.currentTimeMillis();
+        long windowStart = now / 1000 / frequencySeconds * frequencySeconds;
+        if (rateLimitTokenCache.take(taskDefName, windowStart)) {
+            return false;
+        }
+
+        // the share of the previous window still within the sliding window ending now
+        double previousWeight = 1.0 - (now - windowStart * 1000) / (frequencySeconds * 1000.0);
+        int requested = rateLimitTokenCache.batchSize(rateLimit);
+
+        int granted =
+                getWithRetriedTransactions(
+                        connection ->
+                                takeRateLimitTokens(
+                                        connection,
+                                        taskDefName,
+                                        rateLimit,
+                                        frequencySeconds,
+                                        windowStart,
+                                        previousWeight,
+                                        requested));
+
+        if (granted <= 0) {
+            Monitors.recordTaskRateLimited(taskDefName, rateLimit);
+            return true;
+        }
+        rateLimitTokenCache.put(taskDefName, windowStart, granted);
         return false;
     }
 
+    /**
+     * Admits a task of a concurrency limited type while fewer tasks of that type than its limit are
+     * in progress. The in-progress count of the type is kept in a counter row updated along with
+     * task_in_progress, which is locked and read in the transaction that also marks the evaluated
+     * task as in progress when a slot is free. A task already holding a slot, such as one postponed
+     * after it was admitted, is admitted again. Types clearly under their limit may be admitted
+     * from a node-local snapshot of their count, when enabled.
+     */
     @Override
     public boolean exceedsLimit(TaskModel task) {
 
@@ -172,36 +253,20 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
             return false;
         }
 
-        long current = getInProgressTaskCount(task.getTaskDefName());
-
-        if (current >= limit) {
-            Monitors.recordTaskConcurrentExecutionLimited(task.getTaskDefName(), limit);
-            return true;
+        String taskDefName = task.getTaskDefName();
+        if (inProgressCountCache.admit(taskDefName, limit)) {
+            return false;
         }
 
-        logger.info(
-                "Task execution count for {}: limit={}, current={}",
-                task.getTaskDefName(),
-                limit,
-                getInProgressTaskCount(task.getTaskDefName()));
-
-        String taskId = task.getTaskId();
+        boolean admitted =
+                getWithRetriedTransactions(
+                        connection -> acquireInProgressSlot(connection, task, limit));
 
-        List<String> tasksInProgressInOrderOfArrival =
-                findAllTasksInProgressInOrderOfArrival(task, limit);
-
-        boolean rateLimited = !tasksInProgressInOrderOfArrival.contains(taskId);
-
-        if (rateLimited) {
-            logger.info(
-                    "Task execution count limited. {}, limit {}, current {}",
-                    task.getTaskDefName(),
-                    limit,
-                    getInProgressTaskCount(task.getTaskDefName()));
-            Monitors.recordTaskConcurrentExecutionLimited(task.getTaskDefName(), limit);
+        if (!admitted) {
+            Monitors.recordTaskConcurrentExecutionLimited(taskDefName, limit);
+            return true;
         }
-
-        return rateLimited;
+        return false;
     }
 
     @Override
@@ -284,22 +349,20 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
 
     @Override
     public boolean removeWorkflow(String workflowId) {
-        boolean removed = false;
-        WorkflowModel workflow = getWorkflow(workflowId, true);
-        if (workflow != null) {
-            withTransaction(
-                    connection -> {
-                        removeWorkflowDefToWorkflowMapping(connection, workflow);
-                        removeWorkflow(connection, workflowId);
-                        removePendingWorkflow(connection, workflow.getWorkflowName(), workflowId);
-                    });
-            removed = true;
-
-            for (TaskModel task : workflow.getTasks()) {
-                if (!removeTask(task.getTaskId())) {
-                    removed = false;
-                }
-            }
+        return !removeWorkflows(Collections.singletonList(workflowId)).isEmpty();
+    }
+
+    /**
+     * Removes workflows along with their tasks, reading and removing each batch of workflows with
+     * a few set-based statements in one transaction.
+     *
+     * @return the ids of the workflows that were found and removed
+     */
+    public List<String> removeWorkflows(List<String> workflowIds) {
+        List<String> removed = new ArrayList<>(workflowIds.size());
+        for (List<String> batch : Lists.partition(workflowIds, WORKFLOW_BATCH_SIZE)) {
+            removed.addAll(
+                    getWithRetriedTransactions(connection -> removeWorkflows(connection, batch)));
         }
         return removed;
     }
@@ -381,7 +444,7 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     @Override
     public long getInProgressTaskCount(String taskDefName) {
         String GET_IN_PROGRESS_TASK_COUNT =
-                "SELECT COUNT(*) FROM task_in_progress WHERE task_def_name = ? AND in_progress_status = true";
+                "SELECT COALESCE((SELECT in_progress FROM task_in_progress_count WHERE task_def_name = ?), 0)";
 
         return queryWithTransaction(
                 GET_IN_PROGRESS_TASK_COUNT, q -> q.addParameter(taskDefName).executeCount());
@@ -484,31 +547,54 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
         }
     }
 
+    /**
+     * Reads the executions of the actions of an event handler for a message with a single lookup
+     * of their ids on the event_execution primary key. As before, the executions returned stop at
+     * the first action without one.
+     */
     public List<EventExecution> getEventExecutions(
             String eventHandlerName, String eventName, String messageId, int max) {
+        if (max <= 0) {
+            return Lists.newLinkedList();
+        }
+
+        // see SimpleEventProcessor.handle to understand how the execution id is set
+        List<String> executionIds = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) {
+            executionIds.add(messageId + "_" + i);
+        }
+
+        // @formatter:off
+        String GET_EVENT_EXECUTIONS =
+                String.format(
+                        "SELECT json_data FROM event_execution "
+                                + "WHERE event_handler_name = ? "
+                                + "AND event_name = ? "
+                                + "AND message_id = ? "
+                                + "AND execution_id IN (%s)",
+                        Query.generateInBindings(max));
+        // @formatter:on
+
         try {
+            Map<String, EventExecution> found = new HashMap<>();
+            queryWithTransaction(
+                            GET_EVENT_EXECUTIONS,
+                            q ->
+                                    q.addParameter(eventHandlerName)
+                                            .addParameter(eventName)
+                                            .addParameter(messageId)
+                                            .addParameters(executionIds)
+                                            .executeAndFetch(EventExecution.class))
+                    .forEach(execution -> found.put(execution.getId(), execution));
+
             List<EventExecution> executions = Lists.newLinkedList();
-            withTransaction(
-                    tx -> {
-                        for (int i = 0; i < max; i++) {
-                            String executionId =
-                                    messageId + "_"
-                                            + i; // see SimpleEventProcessor.handle to understand
-                            // how the
-                            // execution id is set
-                            EventExecution ee =
-                                    readEventExecution(
-                                            tx,
-                                            eventHandlerName,
-                                            eventName,
-                                            messageId,
-                                            executionId);
-                            if (ee == null) {
-                                break;
-                            }
-                            executions.add(ee);
-                        }
-                    });
+            for (String executionId : executionIds) {
+                EventExecution execution = found.get(executionId);
+                if (execution == null) {
+                    break;
+                }
+                executions.add(execution);
+            }
             return executions;
         } catch (Exception e) {
             String message =
@@ -523,6 +609,10 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     public void updateLastPollData(String taskDefName, String domain, String workerId) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
         PollData pollData = new PollData(taskDefName, domain, workerId, System.currentTimeMillis());
+        if (pollDataBuffer != null) {
+            pollDataBuffer.record(pollData);
+            return;
+        }
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
         withTransaction(tx -> insertOrUpdatePollData(tx, pollData, effectiveDomain));
     }
@@ -530,6 +620,12 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     @Override
     public PollData getPollData(String taskDefName, String domain) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
+        if (pollDataBuffer != null) {
+            PollData pollData = pollDataBuffer.get(taskDefName, domain);
+            if (pollData != null) {
+                return pollData;
+            }
+        }
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
         return getWithRetriedTransactions(tx -> readPollData(tx, taskDefName, effectiveDomain));
     }
@@ -537,7 +633,8 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     @Override
     public List<PollData> getPollData(String taskDefName) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
-        return readAllPollData(taskDefName);
+        List<PollData> pollData = readAllPollData(taskDefName);
+        return pollDataBuffer != null ? pollDataBuffer.merge(pollData, taskDefName) : pollData;
     }
 
     @Override
@@ -547,7 +644,9 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
             tx.setAutoCommit(true);
             try {
                 String GET_ALL_POLL_DATA = "SELECT json_data FROM poll_data ORDER BY queue_name";
-                return query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                List<PollData> pollData =
+                        query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                return pollDataBuffer != null ? pollDataBuffer.merge(pollData, null) : pollData;
             } catch (Throwable th) {
                 throw new NonTransientException(th.getMessage(), th);
             } finally {
@@ -661,9 +760,123 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
                                 .executeUpdate());
     }
 
-    private void removeWorkflow(Connection connection, String workflowId) {
-        String REMOVE_WORKFLOW = "DELETE FROM workflow WHERE workflow_id = ?";
-        execute(connection, REMOVE_WORKFLOW, q -> q.addParameter(workflowId).executeDelete());
+    private List<String> removeWorkflows(Connection connection, List<String> workflowIds) {
+        String LOCK_WORKFLOWS =
+                String.format(
+                        "SELECT json_data FROM workflow WHERE workflow_id IN (%s) FOR UPDATE",
+                        Query.generateInBindings(workflowIds.size()));
+        List<WorkflowModel> workflows =
+                query(
+                        connection,
+                        LOCK_WORKFLOWS,
+                        q -> q.addParameters(workflowIds).executeAndFetch(WorkflowModel.class));
+        if (workflows.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> ids =
+                workflows.stream().map(WorkflowModel::getWorkflowId).collect(Collectors.toList());
+        String inIds = Query.generateInBindings(ids.size());
+        List<String> defMappings = new ArrayList<>(workflows.size() * 3);
+        List<String> pending = new ArrayList<>(workflows.size() * 2);
+        for (WorkflowModel workflow : workflows) {
+            defMappings.add(workflow.getWorkflowName());
+            defMappings.add(dateStr(workflow.getCreateTime()));
+            defMappings.add(workflow.getWorkflowId());
+            pending.add(workflow.getWorkflowName());
+            pending.add(workflow.getWorkflowId());
+        }
+
+        String REMOVE_WORKFLOWS =
+                String.format("DELETE FROM workflow WHERE workflow_id IN (%s)", inIds);
+        String REMOVE_WORKFLOW_DEF_TO_WORKFLOWS =
+                String.format(
+                        "DELETE FROM workflow_def_to_workflow WHERE (workflow_def, date_str, workflow_id) IN (%s)",
+                        rowBindings(ids.size(), 3));
+        String REMOVE_PENDING_WORKFLOWS =
+                String.format(
+                        "DELETE FROM workflow_pending WHERE (workflow_type, workflow_id) IN (%s)",
+                        rowBindings(ids.size(), 2));
+        String GET_WORKFLOW_TASKS =
+                String.format(
+                        "SELECT t.json_data FROM workflow_to_task wt "
+                                + "INNER JOIN task t ON t.task_id = wt.task_id "
+                                + "WHERE wt.workflow_id IN (%s) FOR UPDATE",
+                        inIds);
+        String REMOVE_SCHEDULED_TASKS =
+                String.format("DELETE FROM task_scheduled WHERE workflow_id IN (%s)", inIds);
+        String REMOVE_WORKFLOW_TO_TASKS =
+                String.format("DELETE FROM workflow_to_task WHERE workflow_id IN (%s)", inIds);
+
+        execute(connection, REMOVE_WORKFLOWS, q -> q.addParameters(ids).executeDelete());
+        execute(
+                connection,
+                REMOVE_WORKFLOW_DEF_TO_WORKFLOWS,
+                q -> q.addParameters(defMappings).executeDelete());
+        execute(
+                connection,
+                REMOVE_PENDING_WORKFLOWS,
+                q -> q.addParameters(pending).executeDelete());
+        List<TaskModel> tasks =
+                query(
+                        connection,
+                        GET_WORKFLOW_TASKS,
+                        q -> q.addParameters(ids).executeAndFetch(TaskModel.class));
+        execute(connection, REMOVE_SCHEDULED_TASKS, q -> q.addParameters(ids).executeDelete());
+        execute(connection, REMOVE_WORKFLOW_TO_TASKS, q -> q.addParameters(ids).executeDelete());
+        removeTasks(connection, tasks);
+        return ids;
+    }
+
+    /** Removes the data and the in-progress rows of tasks, releasing their in-progress slots. */
+    private void removeTasks(Connection connection, List<TaskModel> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        List<String> taskIds =
+                tasks.stream().map(TaskModel::getTaskId).collect(Collectors.toList());
+        List<String> inProgressKeys = new ArrayList<>(tasks.size() * 2);
+        for (TaskModel task : tasks) {
+            inProgressKeys.add(task.getTaskDefName());
+            inProgressKeys.add(task.getTaskId());
+        }
+
+        String GET_IN_PROGRESS_TASK_DEF_NAMES =
+                String.format(
+                        "SELECT task_def_name FROM task_in_progress "
+                                + "WHERE (task_def_name, task_id) IN (%s) AND in_progress_status = true",
+                        rowBindings(tasks.size(), 2));
+        String REMOVE_IN_PROGRESS_TASKS =
+                String.format(
+                        "DELETE FROM task_in_progress WHERE (task_def_name, task_id) IN (%s)",
+                        rowBindings(tasks.size(), 2));
+        String REMOVE_TASKS =
+                String.format(
+                        "DELETE FROM task WHERE task_id IN (%s)",
+                        Query.generateInBindings(taskIds.size()));
+
+        List<String> inProgressTaskDefNames =
+                query(
+                        connection,
+                        GET_IN_PROGRESS_TASK_DEF_NAMES,
+                        q -> q.addParameters(inProgressKeys).executeScalarList(String.class));
+        execute(
+                connection,
+                REMOVE_IN_PROGRESS_TASKS,
+                q -> q.addParameters(inProgressKeys).executeDelete());
+        inProgressTaskDefNames.stream()
+                .collect(Collectors.groupingBy(name -> name, Collectors.counting()))
+                .forEach(
+                        (taskDefName, removed) ->
+                                updateInProgressCount(
+                                        connection, taskDefName, -removed.intValue()));
+        execute(connection, REMOVE_TASKS, q -> q.addParameters(taskIds).executeDelete());
+    }
+
+    private static String rowBindings(int rows, int columns) {
+        String row = "(" + Query.generateInBindings(columns) + ")";
+        return String.join(", ", Collections.nCopies(rows, row));
     }
 
     private void addPendingWorkflow(Connection connection, String workflowType, String workflowId) {
@@ -785,20 +998,6 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
                                 .executeUpdate());
     }
 
-    private void removeWorkflowDefToWorkflowMapping(Connection connection, WorkflowModel workflow) {
-        String REMOVE_WORKFLOW_DEF_TO_WORKFLOW =
-                "DELETE FROM workflow_def_to_workflow WHERE workflow_def = ? AND date_str = ? AND workflow_id = ?";
-
-        execute(
-                connection,
-                REMOVE_WORKFLOW_DEF_TO_WORKFLOW,
-                q ->
-                        q.addParameter(workflow.getWorkflowName())
-                                .addParameter(dateStr(workflow.getCreateTime()))
-                                .addParameter(workflow.getWorkflowId())
-                                .executeUpdate());
-    }
-
     @VisibleForTesting
     boolean addScheduledTask(Connection connection, TaskModel task, String taskKey) {
 
@@ -875,30 +1074,180 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
 
     private void removeTaskInProgress(Connection connection, TaskModel task) {
         String REMOVE_IN_PROGRESS_TASK =
-                "DELETE FROM task_in_progress WHERE task_def_name = ? AND task_id = ?";
+                "DELETE FROM task_in_progress WHERE task_def_name = ? AND task_id = ? AND in_progress_status = ?";
 
-        execute(
-                connection,
-                REMOVE_IN_PROGRESS_TASK,
-                q ->
-                        q.addParameter(task.getTaskDefName())
-                                .addParameter(task.getTaskId())
-                                .executeUpdate());
+        // an in-progress row also releases its slot in the counter of its type
+        for (boolean inProgress : new boolean[] {true, false}) {
+            int removed =
+                    query(
+                            connection,
+                            REMOVE_IN_PROGRESS_TASK,
+                            q ->
+                                    q.addParameter(task.getTaskDefName())
+                                            .addParameter(task.getTaskId())
+                                            .addParameter(inProgress)
+                                            .executeUpdate());
+            if (inProgress && removed > 0) {
+                updateInProgressCount(connection, task.getTaskDefName(), -removed);
+            }
+        }
     }
 
-    private void updateInProgressStatus(Connection connection, TaskModel task, boolean inProgress) {
+    private int updateInProgressStatus(Connection connection, TaskModel task, boolean inProgress) {
         String UPDATE_IN_PROGRESS_TASK_STATUS =
                 "UPDATE task_in_progress SET in_progress_status = ?, modified_on = CURRENT_TIMESTAMP "
+                        + "WHERE task_def_name = ? AND task_id = ? AND in_progress_status <> ?";
+
+        int updated =
+                query(
+                        connection,
+                        UPDATE_IN_PROGRESS_TASK_STATUS,
+                        q ->
+                                q.addParameter(inProgress)
+                                        .addParameter(task.getTaskDefName())
+                                        .addParameter(task.getTaskId())
+                                        .addParameter(inProgress)
+                                        .executeUpdate());
+        if (updated > 0) {
+            updateInProgressCount(
+                    connection, task.getTaskDefName(), inProgress ? updated : -updated);
+        }
+        return updated;
+    }
+
+    private void updateInProgressCount(Connection connection, String taskDefName, int delta) {
+        String UPDATE_IN_PROGRESS_COUNT =
+                "INSERT INTO task_in_progress_count (task_def_name, in_progress) VALUES (?, ?) "
+                        + "ON DUPLICATE KEY UPDATE in_progress = in_progress + VALUES(in_progress)";
+
+        execute(
+                connection,
+                UPDATE_IN_PROGRESS_COUNT,
+                q -> q.addParameter(taskDefName).addParameter(delta).executeUpdate());
+    }
+
+    /**
+     * Locks the in-progress counter of the task type and marks the task as in progress when the
+     * counter is below the limit.
+     *
+     * @return true when the task holds a slot, whether it already held one or just acquired it
+     */
+    private boolean acquireInProgressSlot(Connection connection, TaskModel task, int limit) {
+        String taskDefName = task.getTaskDefName();
+        String ENSURE_IN_PROGRESS_COUNT =
+                "INSERT IGNORE INTO task_in_progress_count (task_def_name) VALUES (?)";
+        String LOCK_IN_PROGRESS_COUNT =
+                "SELECT in_progress FROM task_in_progress_count WHERE task_def_name = ? FOR UPDATE";
+        String GET_IN_PROGRESS_STATUS =
+                "SELECT in_progress_status FROM task_in_progress "
                         + "WHERE task_def_name = ? AND task_id = ?";
 
         execute(
                 connection,
-                UPDATE_IN_PROGRESS_TASK_STATUS,
+                ENSURE_IN_PROGRESS_COUNT,
+                q -> q.addParameter(taskDefName).executeUpdate());
+        long current =
+                query(
+                        connection,
+                        LOCK_IN_PROGRESS_COUNT,
+                        q -> q.addParameter(taskDefName).executeCount());
+
+        boolean held =
+                query(
+                        connection,
+                        GET_IN_PROGRESS_STATUS,
+                        q ->
+                                q.addParameter(taskDefName)
+                                        .addParameter(task.getTaskId())
+                                        .executeAndFetch(rs -> rs.next() && rs.getBoolean(1)));
+        if (held) {
+            inProgressCountCache.update(taskDefName, current);
+            return true;
+        }
+
+        int acquired = current < limit ? updateInProgressStatus(connection, task, true) : 0;
+        inProgressCountCache.update(taskDefName, current + acquired);
+        if (current >= limit) {
+            logger.debug(
+                    "Task execution count limited. {}, limit {}, current {}",
+                    taskDefName,
+                    limit,
+                    current);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rolls the rate limit counters of the task type over to the given window and takes as many of
+     * the requested tokens as the estimated count of the sliding window allows.
+     *
+     * @return the number of tokens taken
+     */
+    private int takeRateLimitTokens(
+            Connection connection,
+            String taskDefName,
+            int rateLimit,
+            int frequencySeconds,
+            long windowStart,
+            double previousWeight,
+            int requested) {
+        String ENSURE_RATE_LIMIT =
+                "INSERT IGNORE INTO task_rate_limit (task_def_name, window_start) VALUES (?, ?)";
+        String LOCK_RATE_LIMIT =
+                "SELECT window_start, window_count, previous_count FROM task_rate_limit "
+                        + "WHERE task_def_name = ? FOR UPDATE";
+        String UPDATE_RATE_LIMIT =
+                "UPDATE task_rate_limit SET window_start = ?, window_count = ?, previous_count = ? "
+                        + "WHERE task_def_name = ?";
+
+        execute(
+                connection,
+                ENSURE_RATE_LIMIT,
+                q -> q.addParameter(taskDefName).addParameter(windowStart).executeUpdate());
+        long[] counters =
+                query(
+                        connection,
+                        LOCK_RATE_LIMIT,
+                        q ->
+                                q.addParameter(taskDefName)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    rs.next();
+                                                    return new long[] {
+                                                        rs.getLong("window_start"),
+                                                        rs.getLong("window_count"),
+                                                        rs.getLong("previous_count")
+                                                    };
+                                                }));
+
+        long windowCount = 0;
+        long previousCount = 0;
+        if (counters[0] == windowStart) {
+            windowCount = counters[1];
+            previousCount = counters[2];
+        } else if (counters[0] == windowStart - frequencySeconds) {
+            previousCount = counters[1];
+        }
+
+        double available = rateLimit - previousCount * previousWeight - windowCount;
+        int granted = (int) Math.min(requested, Math.floor(available));
+        if (granted <= 0) {
+            return 0;
+        }
+
+        long count = windowCount + granted;
+        long previous = previousCount;
+        execute(
+                connection,
+                UPDATE_RATE_LIMIT,
                 q ->
-                        q.addParameter(inProgress)
-                                .addParameter(task.getTaskDefName())
-                                .addParameter(task.getTaskId())
+                        q.addParameter(windowStart)
+                                .addParameter(count)
+                                .addParameter(previous)
+                                .addParameter(taskDefName)
                                 .executeUpdate());
+        return granted;
     }
 
     private boolean insertEventExecution(Connection connection, EventExecution eventExecution) {
@@ -963,31 +1312,6 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
                                 .executeUpdate());
     }
 
-    private EventExecution readEventExecution(
-            Connection connection,
-            String eventHandlerName,
-            String eventName,
-            String messageId,
-            String executionId) {
-        // @formatter:off
-        String GET_EVENT_EXECUTION =
-                "SELECT json_data FROM event_execution "
-                        + "WHERE event_handler_name = ? "
-                        + "AND event_name = ? "
-                        + "AND message_id = ? "
-                        + "AND execution_id = ?";
-        // @formatter:on
-        return query(
-                connection,
-                GET_EVENT_EXECUTION,
-                q ->
-                        q.addParameter(eventHandlerName)
-                                .addParameter(eventName)
-                                .addParameter(messageId)
-                                .addParameter(executionId)
-                                .executeAndFetchFirst(EventExecution.class));
-    }
-
     private void insertOrUpdatePollData(Connection connection, PollData pollData, String domain) {
 
         /*
@@ -1021,6 +1345,36 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
         }
     }
 
+    /**
+     * Upserts the latest poll of each queue and domain buffered since the last flush at once. Rows
+     * that already exist still take an auto-increment value, but only once per flush.
+     */
+    private void storePollData(List<PollData> pollData) {
+        String UPSERT_POLL_DATA =
+                String.format(
+                        "INSERT INTO poll_data (queue_name, domain, json_data) VALUES %s "
+                                + "ON DUPLICATE KEY UPDATE json_data = VALUES(json_data), "
+                                + "modified_on = CURRENT_TIMESTAMP",
+                        rowBindings(pollData.size(), 3));
+        withTransaction(
+                tx ->
+                        execute(
+                                tx,
+                                UPSERT_POLL_DATA,
+                                q -> {
+                                    for (PollData data : pollData) {
+                                        String domain =
+                                                (data.getDomain() == null)
+                                                        ? "DEFAULT"
+                                                        : data.getDomain();
+                                        q.addParameter(data.getQueueName())
+                                                .addParameter(domain)
+                                                .addJsonParameter(data);
+                                    }
+                                    q.executeUpdate();
+                                }));
+    }
+
     private PollData readPollData(Connection connection, String queueName, String domain) {
         String GET_POLL_DATA =
                 "SELECT json_data FROM poll_data WHERE queue_name = ? AND domain = ?";
@@ -1039,18 +1393,6 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
                 GET_ALL_POLL_DATA, q -> q.addParameter(queueName).executeAndFetch(PollData.class));
     }
 
-    private List<String> findAllTasksInProgressInOrderOfArrival(TaskModel task, int limit) {
-        String GET_IN_PROGRESS_TASKS_WITH_LIMIT =
-                "SELECT task_id FROM task_in_progress WHERE task_def_name = ? ORDER BY created_on LIMIT ?";
-
-        return queryWithTransaction(
-                GET_IN_PROGRESS_TASKS_WITH_LIMIT,
-                q ->
-                        q.addParameter(task.getTaskDefName())
-                                .addParameter(limit)
-                                .executeScalarList(String.class));
-    }
-
     private void validate(TaskModel task) {
         Preconditions.checkNotNull(task, "task object cannot be null");
         Preconditions.checkNotNull(task.getTaskId(), "Task id cannot be null");
@@ -16,6 +16,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -25,22 +27,28 @@ import javax.sql.DataSource;
 import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.core.events.queue.Message;
-import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.conductor.dao.BulkQueueDAO;
 import com.netflix.conductor.mysql.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Uninterruptibles;
 
-public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
+public class MySQLQueueDAO extends MySQLBaseDAO implements BulkQueueDAO {
 
     private static final Long UNACK_SCHEDULE_MS = 60_000L;
 
+    /** Queues known to exist in the queue table, queues are never removed from it. */
+    private final Set<String> queues = ConcurrentHashMap.newKeySet();
+
     public MySQLQueueDAO(
             RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
         super(retryTemplate, objectMapper, dataSource);
 
+        refreshQueues();
+
         Executors.newSingleThreadScheduledExecutor()
                 .scheduleAtFixedRate(
                         this::processAllUnacks,
@@ -57,12 +65,14 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
 
     @Override
     public void push(String queueName, String messageId, int priority, long offsetTimeInSecond) {
+        createQueueIfNotExists(queueName);
         withTransaction(
                 tx -> pushMessage(tx, queueName, messageId, null, priority, offsetTimeInSecond));
     }
 
     @Override
     public void push(String queueName, List<Message> messages) {
+        createQueueIfNotExists(queueName);
         withTransaction(
                 tx ->
                         messages.forEach(
@@ -84,6 +94,7 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
     @Override
     public boolean pushIfNotExists(
             String queueName, String messageId, int priority, long offsetTimeInSecond) {
+        createQueueIfNotExists(queueName);
         return getWithRetriedTransactions(
                 tx -> {
                     if (!existsMessage(tx, queueName, messageId)) {
@@ -133,6 +144,49 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
         return getWithRetriedTransactions(tx -> removeMessage(tx, queueName, messageId));
     }
 
+    /**
+     * Acknowledges many messages of a queue in a single transaction.
+     *
+     * @return the ids of the messages that were acknowledged
+     */
+    @Override
+    public List<String> ack(String queueName, List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return getWithRetriedTransactions(tx -> removeMessages(tx, queueName, messageIds));
+    }
+
+    /**
+     * Removes many messages of a queue in a single transaction, which locks the existing ones
+     * before deleting them.
+     */
+    @Override
+    public void remove(String queueName, List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        withTransaction(tx -> removeMessages(tx, queueName, messageIds));
+    }
+
+    /**
+     * Un-pops many messages of a queue with a single update. Setting the unack timeout of a message
+     * only moves its delivery time, it stays popped until the unacks are processed.
+     */
+    @Override
+    public void release(String queueName, List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        final String RELEASE_MESSAGES =
+                String.format(
+                        "UPDATE queue_message SET popped = false WHERE queue_name = ? AND message_id IN (%s) AND popped = true",
+                        Query.generateInBindings(messageIds.size()));
+        executeWithTransaction(
+                RELEASE_MESSAGES,
+                q -> q.addParameter(queueName).addParameters(messageIds).executeUpdate());
+    }
+
     @Override
     public boolean setUnackTimeout(String queueName, String messageId, long unackTimeout) {
         long updatedOffsetTimeInSecond = unackTimeout / 1000;
@@ -271,8 +325,6 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
             Integer priority,
             long offsetTimeInSecond) {
 
-        createQueueIfNotExists(connection, queueName);
-
         String UPDATE_MESSAGE =
                 "UPDATE queue_message SET payload=?, deliver_on=TIMESTAMPADD(SECOND,?,CURRENT_TIMESTAMP) WHERE queue_name = ? AND message_id = ?";
         int rowsUpdated =
@@ -312,6 +364,35 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
                 q -> q.addParameter(queueName).addParameter(messageId).executeDelete());
     }
 
+    private List<String> removeMessages(
+            Connection connection, String queueName, List<String> messageIds) {
+        final String LOCK_MESSAGES =
+                String.format(
+                        "SELECT message_id FROM queue_message WHERE queue_name = ? AND message_id IN (%s) FOR UPDATE",
+                        Query.generateInBindings(messageIds.size()));
+        List<String> existingIds =
+                query(
+                        connection,
+                        LOCK_MESSAGES,
+                        q ->
+                                q.addParameter(queueName)
+                                        .addParameters(messageIds)
+                                        .executeScalarList(String.class));
+        if (existingIds.isEmpty()) {
+            return existingIds;
+        }
+
+        final String REMOVE_MESSAGES =
+                String.format(
+                        "DELETE FROM queue_message WHERE queue_name = ? AND message_id IN (%s)",
+                        Query.generateInBindings(existingIds.size()));
+        execute(
+                connection,
+                REMOVE_MESSAGES,
+                q -> q.addParameter(queueName).addParameters(existingIds).executeDelete());
+        return existingIds;
+    }
+
     private List<Message> peekMessages(Connection connection, String queueName, int count) {
         if (count < 1) {
             return Collections.emptyList();
@@ -374,14 +455,28 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
         return poppedMessages;
     }
 
-    private void createQueueIfNotExists(Connection connection, String queueName) {
-        logger.trace("Creating new queue '{}'", queueName);
-        final String EXISTS_QUEUE = "SELECT EXISTS(SELECT 1 FROM queue WHERE queue_name = ?)";
-        boolean exists = query(connection, EXISTS_QUEUE, q -> q.addParameter(queueName).exists());
-        if (!exists) {
-            final String CREATE_QUEUE = "INSERT IGNORE INTO queue (queue_name) VALUES (?)";
-            execute(connection, CREATE_QUEUE, q -> q.addParameter(queueName).executeUpdate());
+    /** Reloads the registry of known queues from the queue table. */
+    @VisibleForTesting
+    void refreshQueues() {
+        final String GET_QUEUES = "SELECT queue_name FROM queue";
+        List<String> existingQueues =
+                queryWithTransaction(GET_QUEUES, q -> q.executeScalarList(String.class));
+        queues.retainAll(existingQueues);
+        queues.addAll(existingQueues);
+    }
+
+    /**
+     * Registers the queue in its own transaction the first time this node pushes to it, so that
+     * pushes to known queues do not touch the queue table at all.
+     */
+    private void createQueueIfNotExists(String queueName) {
+        if (queues.contains(queueName)) {
+            return;
         }
+        logger.trace("Creating new queue '{}'", queueName);
+        final String CREATE_QUEUE = "INSERT IGNORE INTO queue (queue_name) VALUES (?)";
+        executeWithTransaction(CREATE_QUEUE, q -> q.addParameter(queueName).executeUpdate());
+        queues.add(queueName);
     }
 
     @Override
@@ -0,0 +1,11 @@
+-- Number of tasks in progress per task definition, updated along with the in_progress_status of
+-- task_in_progress, so that concurrency limits read and lock a single row instead of counting the
+-- in-progress tasks of a type.
+CREATE TABLE task_in_progress_count (
+  task_def_name varchar(255) NOT NULL,
+  in_progress BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (task_def_name)
+);
+
+INSERT INTO task_in_progress_count (task_def_name, in_progress)
+SELECT task_def_name, COUNT(*) FROM task_in_progress WHERE in_progress_status = true GROUP BY task_def_name;
@@ -77,4 +77,9 @@ public class MySQLExecutionDAOTest extends ExecutionDAOTest {
     public ExecutionDAO getExecutionDAO() {
         return executionDAO;
     }
+
+    @Override
+    protected List<String> removeWorkflows(List<String> workflowIds) {
+        return executionDAO.removeWorkflows(workflowIds);
+    }
 }
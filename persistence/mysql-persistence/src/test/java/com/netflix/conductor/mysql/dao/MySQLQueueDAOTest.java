@@ -74,6 +74,7 @@ public class MySQLQueueDAOTest {
     public void before() {
         flyway.clean();
         flyway.migrate();
+        queueDAO.refreshQueues();
     }
 
     @Test
@@ -169,6 +170,43 @@ public class MySQLQueueDAOTest {
         }
     }
 
+    @Test
+    public void bulkAckAndRemoveTest() {
+        String queueName = "bulk_ack_testQueue";
+        for (int i = 0; i < 10; i++) {
+            queueDAO.push(queueName, "msg" + i, 0);
+        }
+        List<String> popped = queueDAO.pop(queueName, 5, 100);
+        assertEquals(5, popped.size());
+
+        List<String> toAck = new ArrayList<>(popped);
+        toAck.add("unknown");
+        List<String> acked = queueDAO.ack(queueName, toAck);
+        assertEquals(5, acked.size());
+        assertTrue(acked.containsAll(popped));
+        assertEquals(5, queueDAO.getSize(queueName));
+
+        queueDAO.remove(queueName, Arrays.asList("msg5", "msg6"));
+        assertEquals(3, queueDAO.getSize(queueName));
+        assertFalse(queueDAO.containsMessage(queueName, "msg5"));
+        assertTrue(queueDAO.containsMessage(queueName, "msg7"));
+
+        assertTrue(queueDAO.ack(queueName, new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void releaseTest() {
+        String queueName = "release_testQueue";
+        queueDAO.push(queueName, "msg0", 0);
+        queueDAO.push(queueName, "msg1", 0);
+        assertEquals(2, queueDAO.pop(queueName, 2, 100).size());
+        assertTrue(queueDAO.pop(queueName, 2, 100).isEmpty());
+
+        // released messages are visible to the next poll without waiting for the unack sweep
+        queueDAO.release(queueName, Arrays.asList("msg0", "unknown"));
+        assertEquals(Arrays.asList("msg0"), queueDAO.pop(queueName, 2, 100));
+    }
+
     /**
      * Test fix for https://github.com/Netflix/conductor/issues/399
      *
@@ -12,6 +12,7 @@
 package com.netflix.conductor.postgres.config;
 
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.annotation.PostConstruct;
@@ -28,6 +29,8 @@ import org.springframework.retry.backoff.NoBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
 
+import com.netflix.conductor.dao.PrefetchingQueueDAO;
+import com.netflix.conductor.dao.QueueDAO;
 import com.netflix.conductor.postgres.dao.PostgresExecutionDAO;
 import com.netflix.conductor.postgres.dao.PostgresIndexDAO;
 import com.netflix.conductor.postgres.dao.PostgresMetadataDAO;
@@ -58,6 +61,10 @@ public class PostgresConfiguration {
         return Flyway.configure()
                 .locations("classpath:db/migration_postgres")
                 .schemas(properties.getSchema())
+                .placeholders(
+                        Map.of(
+                                "queueMessagePartitions",
+                                String.valueOf(properties.getQueueMessagePartitions())))
                 .dataSource(dataSource)
                 .baselineOnMigrate(true)
                 .load();
@@ -76,16 +83,29 @@ public class PostgresConfiguration {
     @DependsOn({"flywayForPrimaryDb"})
     public PostgresExecutionDAO postgresExecutionDAO(
             @Qualifier("postgresRetryTemplate") RetryTemplate retryTemplate,
-            ObjectMapper objectMapper) {
-        return new PostgresExecutionDAO(retryTemplate, objectMapper, dataSource);
+            ObjectMapper objectMapper,
+            PostgresProperties properties) {
+        return new PostgresExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
     }
 
     @Bean
     @DependsOn({"flywayForPrimaryDb"})
     public PostgresQueueDAO postgresQueueDAO(
             @Qualifier("postgresRetryTemplate") RetryTemplate retryTemplate,
-            ObjectMapper objectMapper) {
-        return new PostgresQueueDAO(retryTemplate, objectMapper, dataSource);
+            ObjectMapper objectMapper,
+            PostgresProperties properties) {
+        return new PostgresQueueDAO(retryTemplate, objectMapper, dataSource, properties);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "conductor.postgres.queuePrefetchEnabled", havingValue = "true")
+    public QueueDAO postgresPrefetchingQueueDAO(
+            PostgresQueueDAO postgresQueueDAO, PostgresProperties properties) {
+        return new PrefetchingQueueDAO(
+                postgresQueueDAO,
+                properties.getQueuePrefetchSize(),
+                properties.getQueuePrefetchMaxAge().toMillis());
     }
 
     @Bean
@@ -93,8 +113,9 @@ public class PostgresConfiguration {
     @ConditionalOnProperty(name = "conductor.indexing.type", havingValue = "postgres")
     public PostgresIndexDAO postgresIndexDAO(
             @Qualifier("postgresRetryTemplate") RetryTemplate retryTemplate,
-            ObjectMapper objectMapper) {
-        return new PostgresIndexDAO(retryTemplate, objectMapper, dataSource);
+            ObjectMapper objectMapper,
+            PostgresProperties properties) {
+        return new PostgresIndexDAO(retryTemplate, objectMapper, dataSource, properties);
     }
 
     @Bean
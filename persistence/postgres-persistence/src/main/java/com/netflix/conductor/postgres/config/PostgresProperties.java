@@ -28,6 +28,100 @@ public class PostgresProperties {
 
     public String schema = "public";
 
+    /**
+     * Wake up long polls with LISTEN/NOTIFY instead of re-polling the queue every 100ms. Uses one
+     * dedicated connection of the pool per node.
+     */
+    private boolean queueNotificationsEnabled = false;
+
+    /**
+     * How long queue depths may be served from a node-local snapshot, trading exact sizes for a
+     * single depth query per interval. Depths are always read from the database when zero.
+     */
+    private Duration queueDepthCacheDuration = Duration.ZERO;
+
+    /**
+     * The number of hash partitions of the queue_message table, only used by the migration that
+     * partitions it.
+     */
+    private int queueMessagePartitions = 8;
+
+    /** Serve polls from a per-queue buffer of messages popped ahead in larger batches */
+    private boolean queuePrefetchEnabled = false;
+
+    /** The number of messages popped at once to fill the prefetch buffer of a queue */
+    private int queuePrefetchSize = 100;
+
+    /**
+     * How long a prefetched message may stay buffered before it is handed back to its queue, must
+     * stay well below the unack timeout of popped messages
+     */
+    private Duration queuePrefetchMaxAge = Duration.ofSeconds(5);
+
+    /**
+     * Messages pushed with at least this delay are kept in a separate timer table until they are
+     * close to being due, so that they stay out of the table and indexes polls work on. Disabled
+     * when zero.
+     */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration queueDelayThreshold = Duration.ZERO;
+
+    /**
+     * The width of the time buckets of the timer table, a bucket of delayed messages is moved to
+     * its queue up to one bucket ahead of its messages being due
+     */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration queueDelayBucketDuration = Duration.ofSeconds(60);
+
+    /**
+     * How long the in-progress count of a task type may be served from a node-local snapshot to
+     * admit tasks of types that are clearly under their concurrency limit. Every admission is
+     * checked against the database when zero.
+     */
+    private Duration concurrencyLimitCacheDuration = Duration.ZERO;
+
+    /**
+     * The number of rate limit tokens a node takes at once for a task type, spending the extra
+     * ones locally within the same window. Every evaluation is checked against the database when
+     * one.
+     */
+    private int rateLimitTokenBatchSize = 1;
+
+    /** How often each node looks for expired workflows to remove, in batches */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration workflowExpiryReapInterval = Duration.ofSeconds(10);
+
+    /**
+     * How often each node stores the latest poll of each task queue and domain, coalescing the
+     * polls in between into a single write. Every poll is written through when zero.
+     */
+    private Duration pollDataFlushInterval = Duration.ZERO;
+
+    /**
+     * The maximum number of workflows, and as many tasks, waiting to be indexed asynchronously.
+     * Documents indexed asynchronously while the queue is full are indexed on the caller.
+     */
+    private int asyncIndexingQueueSize = 10000;
+
+    /** The maximum number of documents indexed asynchronously by a single statement */
+    private int asyncIndexingBatchSize = 100;
+
+    /** How often the documents waiting to be indexed asynchronously are indexed */
+    private Duration asyncIndexingFlushInterval = Duration.ofMillis(100);
+
+    /**
+     * Index searches the planner expects to match more rows than this report the planner's
+     * estimate as their total hits, instead of counting their matches exactly
+     */
+    private long searchCountEstimateThreshold = 10000;
+
+    /**
+     * The number of days task execution logs are kept for, the monthly partitions of the logs are
+     * dropped once their whole month is past it. Logs are kept forever when zero.
+     */
+    @DurationUnit(ChronoUnit.DAYS)
+    private Duration taskExecutionLogRetention = Duration.ZERO;
+
     public Duration getTaskDefCacheRefreshInterval() {
         return taskDefCacheRefreshInterval;
     }
@@ -51,4 +145,140 @@ public class PostgresProperties {
     public void setSchema(String schema) {
         this.schema = schema;
     }
+
+    public boolean isQueueNotificationsEnabled() {
+        return queueNotificationsEnabled;
+    }
+
+    public void setQueueNotificationsEnabled(boolean queueNotificationsEnabled) {
+        this.queueNotificationsEnabled = queueNotificationsEnabled;
+    }
+
+    public Duration getQueueDepthCacheDuration() {
+        return queueDepthCacheDuration;
+    }
+
+    public void setQueueDepthCacheDuration(Duration queueDepthCacheDuration) {
+        this.queueDepthCacheDuration = queueDepthCacheDuration;
+    }
+
+    public int getQueueMessagePartitions() {
+        return queueMessagePartitions;
+    }
+
+    public void setQueueMessagePartitions(int queueMessagePartitions) {
+        this.queueMessagePartitions = queueMessagePartitions;
+    }
+
+    public boolean isQueuePrefetchEnabled() {
+        return queuePrefetchEnabled;
+    }
+
+    public void setQueuePrefetchEnabled(boolean queuePrefetchEnabled) {
+        this.queuePrefetchEnabled = queuePrefetchEnabled;
+    }
+
+    public int getQueuePrefetchSize() {
+        return queuePrefetchSize;
+    }
+
+    public void setQueuePrefetchSize(int queuePrefetchSize) {
+        this.queuePrefetchSize = queuePrefetchSize;
+    }
+
+    public Duration getQueuePrefetchMaxAge() {
+        return queuePrefetchMaxAge;
+    }
+
+    public void setQueuePrefetchMaxAge(Duration queuePrefetchMaxAge) {
+        this.queuePrefetchMaxAge = queuePrefetchMaxAge;
+    }
+
+    public Duration getQueueDelayThreshold() {
+        return queueDelayThreshold;
+    }
+
+    public void setQueueDelayThreshold(Duration queueDelayThreshold) {
+        this.queueDelayThreshold = queueDelayThreshold;
+    }
+
+    public Duration getQueueDelayBucketDuration() {
+        return queueDelayBucketDuration;
+    }
+
+    public void setQueueDelayBucketDuration(Duration queueDelayBucketDuration) {
+        this.queueDelayBucketDuration = queueDelayBucketDuration;
+    }
+
+    public Duration getConcurrencyLimitCacheDuration() {
+        return concurrencyLimitCacheDuration;
+    }
+
+    public void setConcurrencyLimitCacheDuration(Duration concurrencyLimitCacheDuration) {
+        this.concurrencyLimitCacheDuration = concurrencyLimitCacheDuration;
+    }
+
+    public int getRateLimitTokenBatchSize() {
+        return rateLimitTokenBatchSize;
+    }
+
+    public void setRateLimitTokenBatchSize(int rateLimitTokenBatchSize) {
+        this.rateLimitTokenBatchSize = rateLimitTokenBatchSize;
+    }
+
+    public Duration getWorkflowExpiryReapInterval() {
+        return workflowExpiryReapInterval;
+    }
+
+    public void setWorkflowExpiryReapInterval(Duration workflowExpiryReapInterval) {
+        this.workflowExpiryReapInterval = workflowExpiryReapInterval;
+    }
+
+    public Duration getPollDataFlushInterval() {
+        return pollDataFlushInterval;
+    }
+
+    public void setPollDataFlushInterval(Duration pollDataFlushInterval) {
+        this.pollDataFlushInterval = pollDataFlushInterval;
+    }
+
+    public int getAsyncIndexingQueueSize() {
+        return asyncIndexingQueueSize;
+    }
+
+    public void setAsyncIndexingQueueSize(int asyncIndexingQueueSize) {
+        this.asyncIndexingQueueSize = asyncIndexingQueueSize;
+    }
+
+    public int getAsyncIndexingBatchSize() {
+        return asyncIndexingBatchSize;
+    }
+
+    public void setAsyncIndexingBatchSize(int asyncIndexingBatchSize) {
+        this.asyncIndexingBatchSize = asyncIndexingBatchSize;
+    }
+
+    public Duration getAsyncIndexingFlushInterval() {
+        return asyncIndexingFlushInterval;
+    }
+
+    public void setAsyncIndexingFlushInterval(Duration asyncIndexingFlushInterval) {
+        this.asyncIndexingFlushInterval = asyncIndexingFlushInterval;
+    }
+
+    public long getSearchCountEstimateThreshold() {
+        return searchCountEstimateThreshold;
+    }
+
+    public void setSearchCountEstimateThreshold(long searchCountEstimateThreshold) {
+        this.searchCountEstimateThreshold = searchCountEstimateThreshold;
+    }
+
+    public Duration getTaskExecutionLogRetention() {
+        return taskExecutionLogRetention;
+    }
+
+    public void setTaskExecutionLogRetention(Duration taskExecutionLogRetention) {
+        this.taskExecutionLogRetention = taskExecutionLogRetention;
+    }
 }
@@ -21,6 +21,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
 import org.springframework.retry.support.RetryTemplate;
@@ -31,11 +32,15 @@ import com.netflix.conductor.common.metadata.tasks.TaskDef;
 import com.netflix.conductor.core.exception.NonTransientException;
 import com.netflix.conductor.dao.ConcurrentExecutionLimitDAO;
 import com.netflix.conductor.dao.ExecutionDAO;
+import com.netflix.conductor.dao.InProgressCountCache;
+import com.netflix.conductor.dao.PollDataBuffer;
 import com.netflix.conductor.dao.PollDataDAO;
+import com.netflix.conductor.dao.RateLimitTokenCache;
 import com.netflix.conductor.dao.RateLimitingDAO;
 import com.netflix.conductor.metrics.Monitors;
 import com.netflix.conductor.model.TaskModel;
 import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.postgres.config.PostgresProperties;
 import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -50,14 +55,62 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     private static final String RAW_JSON_FIELD = "rawJSON";
     public static final ThreadGroup THREAD_GROUP = new ThreadGroup("postgres-persistence");
 
+    /** Number of workflows read by a single statement when fetching workflows in batches. */
+    private static final int WORKFLOW_BATCH_SIZE = 100;
+
+    /** Number of workflow and task rows fetched per round trip when reading a batch. */
+    private static final int WORKFLOW_FETCH_SIZE = 500;
+
+    /** Number of expired workflows removed by a single transaction of the reaper. */
+    private static final int EXPIRED_WORKFLOW_BATCH_SIZE = 100;
+
     private final ScheduledExecutorService executor;
+    private final InProgressCountCache inProgressCountCache;
+    private final RateLimitTokenCache rateLimitTokenCache;
+    private final PollDataBuffer pollDataBuffer;
 
     public PostgresExecutionDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            PostgresProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
+        this.inProgressCountCache =
+                new InProgressCountCache(properties.getConcurrencyLimitCacheDuration().toMillis());
+        this.rateLimitTokenCache = new RateLimitTokenCache(properties.getRateLimitTokenBatchSize());
         this.executor =
                 Executors.newSingleThreadScheduledExecutor(
                         runnable -> new Thread(THREAD_GROUP, runnable));
+        long reapIntervalMs = Math.max(properties.getWorkflowExpiryReapInterval().toMillis(), 100);
+        executor.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        removeExpiredWorkflows();
+                    } catch (Exception e) {
+                        logger.error("Unable to remove expired workflows", e);
+                    }
+                },
+                reapIntervalMs,
+                reapIntervalMs,
+                TimeUnit.MILLISECONDS);
+        long pollDataFlushIntervalMs = properties.getPollDataFlushInterval().toMillis();
+        this.pollDataBuffer =
+                pollDataFlushIntervalMs > 0
+                        ? new PollDataBuffer(pollDataFlushIntervalMs, this::storePollData)
+                        : null;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pollDataBuffer != null) {
+            pollDataBuffer.close();
+        }
     }
 
     private static String dateStr(Long timeInMs) {
@@ -87,30 +140,32 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                                 .executeAndFetch(TaskModel.class));
     }
 
+    /**
+     * Pages through the in-progress tasks of a type in task id order, the page starting after the
+     * task id given as {@code startKey}. The page is read with a keyset seek on the task_in_progress
+     * primary key, so its cost only depends on the page size.
+     */
     @Override
     public List<TaskModel> getTasks(String taskDefName, String startKey, int count) {
-        List<TaskModel> tasks = new ArrayList<>(count);
-
-        List<TaskModel> pendingTasks = getPendingTasksForTaskType(taskDefName);
-        boolean startKeyFound = startKey == null;
-        int found = 0;
-        for (TaskModel pendingTask : pendingTasks) {
-            if (!startKeyFound) {
-                if (pendingTask.getTaskId().equals(startKey)) {
-                    startKeyFound = true;
-                    // noinspection ConstantConditions
+        Preconditions.checkNotNull(taskDefName, "task name cannot be null");
+        // @formatter:off
+        String GET_IN_PROGRESS_TASKS_PAGE =
+                "SELECT t.json_data FROM task_in_progress tip "
+                        + "INNER JOIN task t ON t.task_id = tip.task_id "
+                        + "WHERE tip.task_def_name = ?"
+                        + (startKey != null ? " AND tip.task_id > ?" : "")
+                        + " ORDER BY tip.task_id LIMIT ?";
+        // @formatter:on
+
+        return queryWithTransaction(
+                GET_IN_PROGRESS_TASKS_PAGE,
+                q -> {
+                    q.addParameter(taskDefName);
                     if (startKey != null) {
-                        continue;
+                        q.addParameter(startKey);
                     }
-                }
-            }
-            if (startKeyFound && found < count) {
-                tasks.add(pendingTask);
-                found++;
-            }
-        }
-
-        return tasks;
+                    return q.addParameter(count).executeAndFetch(TaskModel.class);
+                });
     }
 
     private static String taskKey(TaskModel task) {
@@ -119,40 +174,10 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
 
     @Override
     public List<TaskModel> createTasks(List<TaskModel> tasks) {
-        List<TaskModel> created = Lists.newArrayListWithCapacity(tasks.size());
-
-        for (TaskModel task : tasks) {
-            withTransaction(
-                    connection -> {
-                        validate(task);
-
-                        task.setScheduledTime(System.currentTimeMillis());
-
-                        final String taskKey = taskKey(task);
-
-                        boolean scheduledTaskAdded = addScheduledTask(connection, task, taskKey);
-
-                        if (!scheduledTaskAdded) {
-                            logger.trace(
-                                    "Task already scheduled, skipping the run "
-                                            + task.getTaskId()
-                                            + ", ref="
-                                            + task.getReferenceTaskName()
-                                            + ", key="
-                                            + taskKey);
-                            return;
-                        }
-
-                        insertOrUpdateTaskData(connection, task);
-                        addWorkflowToTaskMapping(connection, task);
-                        addTaskInProgress(connection, task);
-                        updateTask(connection, task);
-
-                        created.add(task);
-                    });
+        if (tasks.isEmpty()) {
+            return Lists.newArrayList();
         }
-
-        return created;
+        return getWithRetriedTransactions(connection -> createTasks(connection, tasks));
     }
 
     @Override
@@ -161,15 +186,96 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     }
 
     /**
-     * This is a dummy implementation and this feature is not for Postgres backed Conductor
+     * Evaluates the rate limit of the task type over a sliding window of its frequency, estimated
+     * from the counts of the current and the previous fixed window weighted by their overlap. The
+     * counters of a task type are rolled over, checked and incremented by a single upsert, that
+     * takes a batch of tokens at once when node-local tokens are enabled.
      *
      * @param task: which needs to be evaluated whether it is rateLimited or not
      */
     @Override
     public boolean exceedsRateLimitPerFrequency(TaskModel task, TaskDef taskDef) {
+        int rateLimit =
+                taskDef == null
+                        ? task.getRateLimitPerFrequency()
+                        : taskDef.getRateLimitPerFrequency();
+        int frequencySeconds =
+                taskDef == null
+                        ? task.getRateLimitFrequencyInSeconds()
+                        : taskDef.getRateLimitFrequencyInSeconds();
+        if (rateLimit <= 0 || frequencySeconds <= 0) {
+            return false;
+        }
+
+        String taskDefName = task.getTaskDefName();
+        long now = System.currentTimeMillis();
+        long windowStart = now / 1000 / frequencySeconds * frequencySeconds;
+        if (rateLimitTokenCache.take(taskDefName, windowStart)) {
+            return false;
+        }
+
+        // the share of the previous window still within the sliding window ending now
+        double previousWeight = 1.0 - (now - windowStart * 1000) / (frequencySeconds * 1000.0);
+        int requested = rateLimitTokenCache.batchSize(rateLimit);
+
+        // @formatter:off
+        String PREVIOUS_COUNT =
+                "CASE WHEN r.window_start = excluded.window_start THEN r.previous_count "
+                        + "WHEN r.window_start = excluded.window_start - ? THEN r.window_count ELSE 0 END";
+        String WINDOW_COUNT =
+                "CASE WHEN r.window_start = excluded.window_start THEN r.window_count ELSE 0 END";
+        String GRANTED =
+                "LEAST(excluded.granted, FLOOR(? - (" + PREVIOUS_COUNT + ") * ? - " + WINDOW_COUNT + "))";
+        String TAKE_RATE_LIMIT_TOKENS =
+                "INSERT INTO task_rate_limit AS r "
+                        + "(task_def_name, window_start, window_count, previous_count, granted) "
+                        + "VALUES (?, ?, ?, 0, ?) "
+                        + "ON CONFLICT (task_def_name) DO UPDATE SET "
+                        + "window_start = excluded.window_start, "
+                        + "previous_count = " + PREVIOUS_COUNT + ", "
+                        + "window_count = " + WINDOW_COUNT + " + " + GRANTED + ", "
+                        + "granted = " + GRANTED + " "
+                        + "WHERE " + GRANTED + " > 0 "
+                        + "RETURNING granted";
+        // @formatter:on
+
+        int granted =
+                getWithRetriedTransactions(
+                        connection ->
+                                query(
+                                        connection,
+                                        TAKE_RATE_LIMIT_TOKENS,
+                                        q -> {
+                                            q.addParameter(taskDefName)
+                                                    .addParameter(windowStart)
+                                                    .addParameter(requested)
+                                                    .addParameter(requested)
+                                                    .addParameter(frequencySeconds);
+                                            // window_count, granted and the where clause
+                                            for (int i = 0; i < 3; i++) {
+                                                q.addParameter(rateLimit)
+                                                        .addParameter(frequencySeconds)
+                                                        .addParameter(previousWeight);
+                                            }
+                                            return q.executeScalar(Integer.class);
+                                        }));
+
+        if (granted <= 0) {
+            Monitors.recordTaskRateLimited(taskDefName, rateLimit);
+            return true;
+        }
+        rateLimitTokenCache.put(taskDefName, windowStart, granted);
         return false;
     }
 
+    /**
+     * Admits a task of a concurrency limited type while fewer tasks of that type than its limit are
+     * in progress. The in-progress count of the type is kept in a counter row maintained by
+     * triggers on task_in_progress, which is locked and read with one upsert that also marks the
+     * evaluated task as in progress when a slot is free. A task already holding a slot, such as one
+     * postponed after it was admitted, is admitted again. Types clearly under their limit may be
+     * admitted from a node-local snapshot of their count, when enabled.
+     */
     @Override
     public boolean exceedsLimit(TaskModel task) {
 
@@ -185,36 +291,67 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
             return false;
         }
 
-        long current = getInProgressTaskCount(task.getTaskDefName());
-
-        if (current >= limit) {
-            Monitors.recordTaskConcurrentExecutionLimited(task.getTaskDefName(), limit);
-            return true;
+        String taskDefName = task.getTaskDefName();
+        if (inProgressCountCache.admit(taskDefName, limit)) {
+            return false;
         }
 
-        logger.info(
-                "Task execution count for {}: limit={}, current={}",
-                task.getTaskDefName(),
-                limit,
-                getInProgressTaskCount(task.getTaskDefName()));
-
-        String taskId = task.getTaskId();
-
-        List<String> tasksInProgressInOrderOfArrival =
-                findAllTasksInProgressInOrderOfArrival(task, limit);
-
-        boolean rateLimited = !tasksInProgressInOrderOfArrival.contains(taskId);
+        // @formatter:off
+        String ACQUIRE_IN_PROGRESS_SLOT =
+                "WITH counter AS ("
+                        + "INSERT INTO task_in_progress_count AS c (task_def_name, in_progress) VALUES (?, 0) "
+                        + "ON CONFLICT (task_def_name) DO UPDATE SET in_progress = c.in_progress "
+                        + "RETURNING in_progress), "
+                        + "acquired AS ("
+                        + "UPDATE task_in_progress SET in_progress_status = true, modified_on = CURRENT_TIMESTAMP "
+                        + "FROM counter WHERE counter.in_progress < ? "
+                        + "AND task_def_name = ? AND task_id = ? AND in_progress_status = false "
+                        + "RETURNING task_id), "
+                        + "held AS ("
+                        + "SELECT in_progress_status FROM task_in_progress WHERE task_def_name = ? AND task_id = ?) "
+                        + "SELECT counter.in_progress, (SELECT COUNT(*) FROM acquired) AS acquired, "
+                        + "COALESCE((SELECT in_progress_status FROM held), false) AS held FROM counter";
+        // @formatter:on
 
-        if (rateLimited) {
-            logger.info(
+        long[] counts =
+                getWithRetriedTransactions(
+                        connection ->
+                                query(
+                                        connection,
+                                        ACQUIRE_IN_PROGRESS_SLOT,
+                                        q ->
+                                                q.addParameter(taskDefName)
+                                                        .addParameter(limit)
+                                                        .addParameter(taskDefName)
+                                                        .addParameter(task.getTaskId())
+                                                        .addParameter(taskDefName)
+                                                        .addParameter(task.getTaskId())
+                                                        .executeAndFetch(
+                                                                rs -> {
+                                                                    rs.next();
+                                                                    return new long[] {
+                                                                        rs.getLong("in_progress"),
+                                                                        rs.getLong("acquired"),
+                                                                        rs.getBoolean("held")
+                                                                                ? 1
+                                                                                : 0
+                                                                    };
+                                                                })));
+
+        long current = counts[0];
+        boolean held = counts[2] > 0;
+        inProgressCountCache.update(taskDefName, current + counts[1]);
+
+        if (!held && current >= limit) {
+            logger.debug(
                     "Task execution count limited. {}, limit {}, current {}",
-                    task.getTaskDefName(),
+                    taskDefName,
                     limit,
-                    getInProgressTaskCount(task.getTaskDefName()));
-            Monitors.recordTaskConcurrentExecutionLimited(task.getTaskDefName(), limit);
+                    current);
+            Monitors.recordTaskConcurrentExecutionLimited(taskDefName, limit);
+            return true;
         }
-
-        return rateLimited;
+        return false;
     }
 
     @Override
@@ -297,41 +434,76 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
 
     @Override
     public boolean removeWorkflow(String workflowId) {
-        boolean removed = false;
-        WorkflowModel workflow = getWorkflow(workflowId, true);
-        if (workflow != null) {
-            withTransaction(
-                    connection -> {
-                        removeWorkflowDefToWorkflowMapping(connection, workflow);
-                        removeWorkflow(connection, workflowId);
-                        removePendingWorkflow(connection, workflow.getWorkflowName(), workflowId);
-                    });
-            removed = true;
-
-            for (TaskModel task : workflow.getTasks()) {
-                if (!removeTask(task.getTaskId())) {
-                    removed = false;
-                }
-            }
+        return !removeWorkflows(Collections.singletonList(workflowId)).isEmpty();
+    }
+
+    /**
+     * Removes workflows along with their tasks, reading and removing each batch of workflows with
+     * a couple of set-based statements in one transaction.
+     *
+     * @return the ids of the workflows that were found and removed
+     */
+    public List<String> removeWorkflows(List<String> workflowIds) {
+        List<String> removed = new ArrayList<>(workflowIds.size());
+        for (List<String> batch : Lists.partition(workflowIds, WORKFLOW_BATCH_SIZE)) {
+            removed.addAll(
+                    getWithRetriedTransactions(connection -> removeWorkflows(connection, batch)));
         }
         return removed;
     }
 
-    /** Scheduled executor based implementation. */
+    /**
+     * Marks the workflow to expire after the given time, it is then removed along with its tasks by
+     * the expiry reaper of any node. The expiry is stored with the workflow, so it survives
+     * restarts.
+     */
     @Override
     public boolean removeWorkflowWithExpiry(String workflowId, int ttlSeconds) {
-        executor.schedule(
-                () -> {
-                    try {
-                        removeWorkflow(workflowId);
-                    } catch (Throwable e) {
-                        logger.warn("Unable to remove workflow: {} with expiry", workflowId, e);
-                    }
-                },
-                ttlSeconds,
-                TimeUnit.SECONDS);
+        String SET_WORKFLOW_EXPIRY =
+                "UPDATE workflow SET expires_at = CURRENT_TIMESTAMP + (? ||' seconds')::interval "
+                        + "WHERE workflow_id = ?";
 
-        return true;
+        return queryWithTransaction(
+                        SET_WORKFLOW_EXPIRY,
+                        q -> q.addParameter(ttlSeconds).addParameter(workflowId).executeUpdate())
+                > 0;
+    }
+
+    /**
+     * Removes the expired workflows in batches, each one in its own transaction. Workflows being
+     * removed by the reaper of another node are skipped.
+     *
+     * @return the number of workflows removed
+     */
+    @VisibleForTesting
+    int removeExpiredWorkflows() {
+        // @formatter:off
+        String LOCK_EXPIRED_WORKFLOWS =
+                "SELECT workflow_id FROM workflow "
+                        + "WHERE expires_at <= CURRENT_TIMESTAMP "
+                        + "ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED";
+        // @formatter:on
+
+        int total = 0;
+        int removed;
+        do {
+            removed =
+                    getWithRetriedTransactions(
+                            connection -> {
+                                List<String> expired =
+                                        query(
+                                                connection,
+                                                LOCK_EXPIRED_WORKFLOWS,
+                                                q ->
+                                                        q.addParameter(EXPIRED_WORKFLOW_BATCH_SIZE)
+                                                                .executeScalarList(String.class));
+                                return expired.isEmpty()
+                                        ? 0
+                                        : removeWorkflows(connection, expired).size();
+                            });
+            total += removed;
+        } while (removed == EXPIRED_WORKFLOW_BATCH_SIZE);
+        return total;
     }
 
     @Override
@@ -346,16 +518,10 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
 
     @Override
     public WorkflowModel getWorkflow(String workflowId, boolean includeTasks) {
-        WorkflowModel workflow = getWithRetriedTransactions(tx -> readWorkflow(tx, workflowId));
-
-        if (workflow != null) {
-            if (includeTasks) {
-                List<TaskModel> tasks = getTasksForWorkflow(workflowId);
-                tasks.sort(Comparator.comparingInt(TaskModel::getSeq));
-                workflow.setTasks(tasks);
-            }
+        if (!includeTasks) {
+            return getWithRetriedTransactions(tx -> readWorkflow(tx, workflowId));
         }
-        return workflow;
+        return getWithRetriedTransactions(tx -> readWorkflowWithTasks(tx, workflowId));
     }
 
     /**
@@ -383,12 +549,23 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     @Override
     public List<WorkflowModel> getPendingWorkflowsByType(String workflowName, int version) {
         Preconditions.checkNotNull(workflowName, "workflowName cannot be null");
-        return getRunningWorkflowIds(workflowName, version).stream()
-                .map(this::getWorkflow)
+        return getWorkflows(getRunningWorkflowIds(workflowName, version)).stream()
                 .filter(workflow -> workflow.getWorkflowVersion() == version)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Loads many workflows with their tasks, reading a chunk of workflows per statement instead of
+     * calling {@link #getWorkflow(String)} for each of them. Unknown ids are skipped. All the
+     * workflows found are held in memory at once, callers bound the number of ids they pass.
+     *
+     * @param workflowIds the ids of the workflows to load
+     * @return the workflows found, in the order of their ids
+     */
+    public List<WorkflowModel> getWorkflows(List<String> workflowIds) {
+        return readWorkflows(workflowIds, null, null);
+    }
+
     @Override
     public long getPendingWorkflowCount(String workflowName) {
         Preconditions.checkNotNull(workflowName, "workflowName cannot be null");
@@ -402,7 +579,7 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     @Override
     public long getInProgressTaskCount(String taskDefName) {
         String GET_IN_PROGRESS_TASK_COUNT =
-                "SELECT COUNT(*) FROM task_in_progress WHERE task_def_name = ? AND in_progress_status = true";
+                "SELECT COALESCE((SELECT in_progress FROM task_in_progress_count WHERE task_def_name = ?), 0)";
 
         return queryWithTransaction(
                 GET_IN_PROGRESS_TASK_COUNT, q -> q.addParameter(taskDefName).executeCount());
@@ -415,44 +592,21 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         Preconditions.checkNotNull(startTime, "startTime cannot be null");
         Preconditions.checkNotNull(endTime, "endTime cannot be null");
 
-        List<WorkflowModel> workflows = new LinkedList<>();
-
-        withTransaction(
-                tx -> {
-                    // @formatter:off
-                    String GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF =
-                            "SELECT workflow_id FROM workflow_def_to_workflow "
-                                    + "WHERE workflow_def = ? AND date_str BETWEEN ? AND ? FOR SHARE SKIP LOCKED";
-                    // @formatter:on
-
-                    List<String> workflowIds =
-                            query(
-                                    tx,
-                                    GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF,
-                                    q ->
-                                            q.addParameter(workflowName)
-                                                    .addParameter(dateStr(startTime))
-                                                    .addParameter(dateStr(endTime))
-                                                    .executeScalarList(String.class));
-                    workflowIds.forEach(
-                            workflowId -> {
-                                try {
-                                    WorkflowModel wf = getWorkflow(workflowId);
-                                    if (wf.getCreateTime() >= startTime
-                                            && wf.getCreateTime() <= endTime) {
-                                        workflows.add(wf);
-                                    }
-                                } catch (Exception e) {
-                                    logger.error(
-                                            "Unable to load workflow id {} with name {}",
-                                            workflowId,
-                                            workflowName,
-                                            e);
-                                }
-                            });
-                });
+        // @formatter:off
+        String GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF =
+                "SELECT workflow_id FROM workflow_def_to_workflow "
+                        + "WHERE workflow_def = ? AND date_str BETWEEN ? AND ? FOR SHARE SKIP LOCKED";
+        // @formatter:on
 
-        return workflows;
+        List<String> workflowIds =
+                queryWithTransaction(
+                        GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF,
+                        q ->
+                                q.addParameter(workflowName)
+                                        .addParameter(dateStr(startTime))
+                                        .addParameter(dateStr(endTime))
+                                        .executeScalarList(String.class));
+        return readWorkflows(workflowIds, startTime, endTime);
     }
 
     @Override
@@ -505,31 +659,52 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         }
     }
 
+    /**
+     * Reads the executions of the actions of an event handler for a message with a single lookup
+     * of their ids on the event_execution primary key. As before, the executions returned stop at
+     * the first action without one.
+     */
     public List<EventExecution> getEventExecutions(
             String eventHandlerName, String eventName, String messageId, int max) {
+        if (max <= 0) {
+            return Lists.newLinkedList();
+        }
+
+        // see SimpleEventProcessor.handle to understand how the execution id is set
+        List<String> executionIds = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) {
+            executionIds.add(messageId + "_" + i);
+        }
+
+        // @formatter:off
+        String GET_EVENT_EXECUTIONS =
+                "SELECT json_data FROM event_execution "
+                        + "WHERE event_handler_name = ? "
+                        + "AND event_name = ? "
+                        + "AND message_id = ? "
+                        + "AND execution_id = ANY(?)";
+        // @formatter:on
+
         try {
+            Map<String, EventExecution> found = new HashMap<>();
+            queryWithTransaction(
+                            GET_EVENT_EXECUTIONS,
+                            q ->
+                                    q.addParameter(eventHandlerName)
+                                            .addParameter(eventName)
+                                            .addParameter(messageId)
+                                            .addParameter(executionIds)
+                                            .executeAndFetch(EventExecution.class))
+                    .forEach(execution -> found.put(execution.getId(), execution));
+
             List<EventExecution> executions = Lists.newLinkedList();
-            withTransaction(
-                    tx -> {
-                        for (int i = 0; i < max; i++) {
-                            String executionId =
-                                    messageId + "_"
-                                            + i; // see SimpleEventProcessor.handle to understand
-                            // how the
-                            // execution id is set
-                            EventExecution ee =
-                                    readEventExecution(
-                                            tx,
-                                            eventHandlerName,
-                                            eventName,
-                                            messageId,
-                                            executionId);
-                            if (ee == null) {
-                                break;
-                            }
-                            executions.add(ee);
-                        }
-                    });
+            for (String executionId : executionIds) {
+                EventExecution execution = found.get(executionId);
+                if (execution == null) {
+                    break;
+                }
+                executions.add(execution);
+            }
             return executions;
         } catch (Exception e) {
             String message =
@@ -544,6 +719,10 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     public void updateLastPollData(String taskDefName, String domain, String workerId) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
         PollData pollData = new PollData(taskDefName, domain, workerId, System.currentTimeMillis());
+        if (pollDataBuffer != null) {
+            pollDataBuffer.record(pollData);
+            return;
+        }
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
         withTransaction(tx -> insertOrUpdatePollData(tx, pollData, effectiveDomain));
     }
@@ -551,6 +730,12 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     @Override
     public PollData getPollData(String taskDefName, String domain) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
+        if (pollDataBuffer != null) {
+            PollData pollData = pollDataBuffer.get(taskDefName, domain);
+            if (pollData != null) {
+                return pollData;
+            }
+        }
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
         return getWithRetriedTransactions(tx -> readPollData(tx, taskDefName, effectiveDomain));
     }
@@ -558,7 +743,8 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     @Override
     public List<PollData> getPollData(String taskDefName) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
-        return readAllPollData(taskDefName);
+        List<PollData> pollData = readAllPollData(taskDefName);
+        return pollDataBuffer != null ? pollDataBuffer.merge(pollData, taskDefName) : pollData;
     }
 
     @Override
@@ -568,7 +754,9 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
             tx.setAutoCommit(true);
             try {
                 String GET_ALL_POLL_DATA = "SELECT json_data FROM poll_data ORDER BY queue_name";
-                return query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                List<PollData> pollData =
+                        query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                return pollDataBuffer != null ? pollDataBuffer.merge(pollData, null) : pollData;
             } catch (Throwable th) {
                 throw new NonTransientException(th.getMessage(), th);
             } finally {
@@ -597,6 +785,90 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 q -> q.addParameters(taskIds).executeAndFetch(TaskModel.class));
     }
 
+    /**
+     * Reads the workflows in chunks of ids, each chunk in its own transaction. The fetch size only
+     * limits the rows buffered from the server while reading a chunk: all the workflows read are
+     * held in the returned list, as the {@link ExecutionDAO} methods built on this return lists.
+     *
+     * @param startTime when not null, only the workflows created between startTime and endTime are
+     *     read
+     */
+    private List<WorkflowModel> readWorkflows(
+            List<String> workflowIds, Long startTime, Long endTime) {
+        List<WorkflowModel> workflows = new ArrayList<>(workflowIds.size());
+        for (List<String> chunk : Lists.partition(workflowIds, WORKFLOW_BATCH_SIZE)) {
+            workflows.addAll(
+                    getWithRetriedTransactions(tx -> readWorkflows(tx, chunk, startTime, endTime)));
+        }
+        return workflows;
+    }
+
+    private List<WorkflowModel> readWorkflows(
+            Connection connection, List<String> workflowIds, Long startTime, Long endTime) {
+        boolean filterByCreateTime = startTime != null;
+
+        // @formatter:off
+        final String GET_WORKFLOWS_WITH_TASKS =
+                "WITH workflows AS ( \n"
+                        + "    SELECT workflow_id, json_data FROM workflow WHERE workflow_id = ANY(?)"
+                        + (filterByCreateTime
+                                ? " AND (json_data::json->>'createTime')::bigint BETWEEN ? AND ?"
+                                : "")
+                        + ") \n"
+                        + "SELECT workflow_id, true AS is_workflow, json_data FROM workflows \n"
+                        + "UNION ALL \n"
+                        + "SELECT wt.workflow_id, false, t.json_data FROM workflows w \n"
+                        + "INNER JOIN workflow_to_task wt ON wt.workflow_id = w.workflow_id \n"
+                        + "INNER JOIN task t ON t.task_id = wt.task_id \n"
+                        + "WHERE t.json_data IS NOT NULL";
+        // @formatter:on
+
+        return query(
+                connection,
+                GET_WORKFLOWS_WITH_TASKS,
+                q -> {
+                    q.setFetchSize(WORKFLOW_FETCH_SIZE).addParameter(workflowIds);
+                    if (filterByCreateTime) {
+                        q.addParameter(startTime).addParameter(endTime);
+                    }
+                    return q.executeAndFetch(
+                            rs -> {
+                                Map<String, WorkflowModel> workflows = new HashMap<>();
+                                Map<String, List<TaskModel>> tasks = new HashMap<>();
+                                while (rs.next()) {
+                                    String workflowId = rs.getString("workflow_id");
+                                    String json = rs.getString("json_data");
+                                    if (!rs.getBoolean("is_workflow")) {
+                                        tasks.computeIfAbsent(workflowId, id -> new ArrayList<>())
+                                                .add(readValue(json, TaskModel.class));
+                                        continue;
+                                    }
+                                    try {
+                                        workflows.put(
+                                                workflowId, readValue(json, WorkflowModel.class));
+                                    } catch (Exception e) {
+                                        logger.error(
+                                                "Unable to load workflow id {}", workflowId, e);
+                                    }
+                                }
+
+                                List<WorkflowModel> result = new ArrayList<>(workflows.size());
+                                for (String workflowId : workflowIds) {
+                                    WorkflowModel workflow = workflows.get(workflowId);
+                                    if (workflow != null) {
+                                        List<TaskModel> workflowTasks =
+                                                tasks.getOrDefault(workflowId, new ArrayList<>());
+                                        workflowTasks.sort(
+                                                Comparator.comparingInt(TaskModel::getSeq));
+                                        workflow.setTasks(workflowTasks);
+                                        result.add(workflow);
+                                    }
+                                }
+                                return result;
+                            });
+                });
+    }
+
     private String insertOrUpdateWorkflow(WorkflowModel workflow, boolean update) {
         Preconditions.checkNotNull(workflow, "workflow object cannot be null");
 
@@ -627,6 +899,144 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         return workflow.getWorkflowId();
     }
 
+    /**
+     * Creates all the tasks in the given transaction with one multi-row statement per table. The
+     * rows returned by the insert into task_scheduled tell which tasks were actually scheduled, the
+     * tasks whose key was already scheduled for their workflow are skipped.
+     */
+    private List<TaskModel> createTasks(Connection connection, List<TaskModel> tasks) {
+        tasks.forEach(this::validate);
+
+        List<String> workflowIds = new ArrayList<>(tasks.size());
+        List<String> taskKeys = new ArrayList<>(tasks.size());
+        List<String> taskIds = new ArrayList<>(tasks.size());
+        for (TaskModel task : tasks) {
+            task.setScheduledTime(System.currentTimeMillis());
+            workflowIds.add(task.getWorkflowInstanceId());
+            taskKeys.add(taskKey(task));
+            taskIds.add(task.getTaskId());
+        }
+
+        // @formatter:off
+        final String INSERT_SCHEDULED_TASKS =
+                "INSERT INTO task_scheduled (workflow_id, task_key, task_id) \n"
+                        + "SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::varchar[]) \n"
+                        + "ON CONFLICT (workflow_id,task_key) DO NOTHING RETURNING workflow_id, task_key";
+        // @formatter:on
+
+        Set<String> scheduledKeys =
+                query(
+                        connection,
+                        INSERT_SCHEDULED_TASKS,
+                        q ->
+                                q.addParameter(workflowIds)
+                                        .addParameter(taskKeys)
+                                        .addParameter(taskIds)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    Set<String> keys = new HashSet<>();
+                                                    while (rs.next()) {
+                                                        keys.add(
+                                                                rs.getString("workflow_id")
+                                                                        + "/"
+                                                                        + rs.getString("task_key"));
+                                                    }
+                                                    return keys;
+                                                }));
+
+        List<TaskModel> created = Lists.newArrayListWithCapacity(scheduledKeys.size());
+        for (TaskModel task : tasks) {
+            // the first task of the batch with a key is the one that got scheduled
+            if (scheduledKeys.remove(task.getWorkflowInstanceId() + "/" + taskKey(task))) {
+                created.add(task);
+            } else {
+                logger.trace(
+                        "Task already scheduled, skipping the run "
+                                + task.getTaskId()
+                                + ", ref="
+                                + task.getReferenceTaskName()
+                                + ", key="
+                                + taskKey(task));
+            }
+        }
+        if (created.isEmpty()) {
+            return created;
+        }
+
+        // a statement cannot upsert the same task twice, the last one created with an id wins
+        Map<String, TaskModel> createdById = new LinkedHashMap<>();
+        created.forEach(task -> createdById.put(task.getTaskId(), task));
+        insertTasks(connection, createdById.values());
+
+        return created;
+    }
+
+    private void insertTasks(Connection connection, Collection<TaskModel> tasks) {
+        List<String> taskIds = new ArrayList<>(tasks.size());
+        List<String> jsonData = new ArrayList<>(tasks.size());
+        List<String> workflowIds = new ArrayList<>(tasks.size());
+        List<String> inProgressTaskDefNames = new ArrayList<>();
+        List<String> inProgressTaskIds = new ArrayList<>();
+        List<String> inProgressWorkflowIds = new ArrayList<>();
+        List<Boolean> inProgressStatuses = new ArrayList<>();
+        for (TaskModel task : tasks) {
+            taskIds.add(task.getTaskId());
+            jsonData.add(toJson(task));
+            workflowIds.add(task.getWorkflowInstanceId());
+
+            // terminal tasks are not in progress, see updateTask
+            if (task.getStatus() == null || !task.getStatus().isTerminal()) {
+                boolean concurrencyLimited =
+                        task.getTaskDefinition()
+                                .map(taskDef -> taskDef.concurrencyLimit() > 0)
+                                .orElse(false);
+                inProgressTaskDefNames.add(task.getTaskDefName());
+                inProgressTaskIds.add(task.getTaskId());
+                inProgressWorkflowIds.add(task.getWorkflowInstanceId());
+                inProgressStatuses.add(
+                        concurrencyLimited && task.getStatus() == TaskModel.Status.IN_PROGRESS);
+            }
+        }
+
+        // @formatter:off
+        final String INSERT_TASKS =
+                "INSERT INTO task (task_id, json_data, modified_on) \n"
+                        + "SELECT t.task_id, t.json_data, CURRENT_TIMESTAMP FROM unnest(?::varchar[], ?::text[]) AS t(task_id, json_data) \n"
+                        + "ON CONFLICT (task_id) DO UPDATE SET json_data=excluded.json_data, modified_on=excluded.modified_on";
+        final String INSERT_WORKFLOW_TO_TASKS =
+                "INSERT INTO workflow_to_task (workflow_id, task_id) \n"
+                        + "SELECT * FROM unnest(?::varchar[], ?::varchar[]) \n"
+                        + "ON CONFLICT (workflow_id,task_id) DO NOTHING";
+        final String INSERT_IN_PROGRESS_TASKS =
+                "INSERT INTO task_in_progress (task_def_name, task_id, workflow_id, in_progress_status) \n"
+                        + "SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::boolean[]) \n"
+                        + "ON CONFLICT (task_def_name,task_id) DO NOTHING";
+        // @formatter:on
+
+        execute(
+                connection,
+                INSERT_TASKS,
+                q ->
+                        q.addParameter(taskIds)
+                                .addArrayParameter("text", jsonData.toArray())
+                                .executeUpdate());
+        execute(
+                connection,
+                INSERT_WORKFLOW_TO_TASKS,
+                q -> q.addParameter(workflowIds).addParameter(taskIds).executeUpdate());
+        if (!inProgressTaskIds.isEmpty()) {
+            execute(
+                    connection,
+                    INSERT_IN_PROGRESS_TASKS,
+                    q ->
+                            q.addParameter(inProgressTaskDefNames)
+                                    .addParameter(inProgressTaskIds)
+                                    .addParameter(inProgressWorkflowIds)
+                                    .addArrayParameter("bool", inProgressStatuses.toArray())
+                                    .executeUpdate());
+        }
+    }
+
     private void updateTask(Connection connection, TaskModel task) {
         Optional<TaskDef> taskDefinition = task.getTaskDefinition();
 
@@ -655,6 +1065,51 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 q -> q.addParameter(workflowId).executeAndFetchFirst(WorkflowModel.class));
     }
 
+    /**
+     * Reads the workflow and its tasks with a single statement, the first row being the workflow.
+     * The task mappings of the workflow are share locked, as {@link #getTasksForWorkflow(String)}
+     * does.
+     */
+    private WorkflowModel readWorkflowWithTasks(Connection connection, String workflowId) {
+        // @formatter:off
+        final String GET_WORKFLOW_WITH_TASKS =
+                "WITH task_ids AS ( \n"
+                        + "    SELECT task_id FROM workflow_to_task WHERE workflow_id = ? FOR SHARE) \n"
+                        + "SELECT true AS is_workflow, json_data FROM workflow WHERE workflow_id = ? \n"
+                        + "UNION ALL \n"
+                        + "SELECT false, t.json_data FROM task t INNER JOIN task_ids ti ON ti.task_id = t.task_id \n"
+                        + "WHERE t.json_data IS NOT NULL";
+        // @formatter:on
+
+        return query(
+                connection,
+                GET_WORKFLOW_WITH_TASKS,
+                q ->
+                        q.addParameter(workflowId)
+                                .addParameter(workflowId)
+                                .executeAndFetch(
+                                        rs -> {
+                                            WorkflowModel workflow = null;
+                                            List<TaskModel> tasks = new ArrayList<>();
+                                            while (rs.next()) {
+                                                String json = rs.getString("json_data");
+                                                if (rs.getBoolean("is_workflow")) {
+                                                    workflow =
+                                                            readValue(json, WorkflowModel.class);
+                                                } else {
+                                                    tasks.add(readValue(json, TaskModel.class));
+                                                }
+                                            }
+                                            if (workflow != null) {
+                                                tasks.sort(
+                                                        Comparator.comparingInt(
+                                                                TaskModel::getSeq));
+                                                workflow.setTasks(tasks);
+                                            }
+                                            return workflow;
+                                        }));
+    }
+
     private void addWorkflow(Connection connection, WorkflowModel workflow) {
         String INSERT_WORKFLOW =
                 "INSERT INTO workflow (workflow_id, correlation_id, json_data) VALUES (?, ?, ?)";
@@ -682,9 +1137,60 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                                 .executeUpdate());
     }
 
-    private void removeWorkflow(Connection connection, String workflowId) {
-        String REMOVE_WORKFLOW = "DELETE FROM workflow WHERE workflow_id = ?";
-        execute(connection, REMOVE_WORKFLOW, q -> q.addParameter(workflowId).executeDelete());
+    private List<String> removeWorkflows(Connection connection, List<String> workflowIds) {
+        String REMOVE_WORKFLOWS = "DELETE FROM workflow WHERE workflow_id = ANY(?) RETURNING json_data";
+        List<WorkflowModel> workflows =
+                query(
+                        connection,
+                        REMOVE_WORKFLOWS,
+                        q -> q.addParameter(workflowIds).executeAndFetch(WorkflowModel.class));
+        if (workflows.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> ids = new ArrayList<>(workflows.size());
+        List<String> names = new ArrayList<>(workflows.size());
+        List<String> dates = new ArrayList<>(workflows.size());
+        for (WorkflowModel workflow : workflows) {
+            ids.add(workflow.getWorkflowId());
+            names.add(workflow.getWorkflowName());
+            dates.add(dateStr(workflow.getCreateTime()));
+        }
+
+        // @formatter:off
+        String REMOVE_WORKFLOW_REFERENCES =
+                "WITH removed_def_mappings AS ("
+                        + "DELETE FROM workflow_def_to_workflow d "
+                        + "USING unnest(?::varchar[], ?::varchar[], ?::varchar[]) AS r(workflow_def, date_str, workflow_id) "
+                        + "WHERE d.workflow_def = r.workflow_def AND d.date_str = r.date_str AND d.workflow_id = r.workflow_id), "
+                        + "removed_pending AS ("
+                        + "DELETE FROM workflow_pending p "
+                        + "USING unnest(?::varchar[], ?::varchar[]) AS r(workflow_type, workflow_id) "
+                        + "WHERE p.workflow_type = r.workflow_type AND p.workflow_id = r.workflow_id), "
+                        + "removed_scheduled AS ("
+                        + "DELETE FROM task_scheduled WHERE workflow_id = ANY(?)), "
+                        + "removed_mappings AS ("
+                        + "DELETE FROM workflow_to_task WHERE workflow_id = ANY(?) RETURNING task_id), "
+                        + "removed_tasks AS ("
+                        + "DELETE FROM task t USING removed_mappings m WHERE t.task_id = m.task_id "
+                        + "RETURNING t.task_id, t.json_data::json->>'taskDefName' AS task_def_name) "
+                        + "DELETE FROM task_in_progress tip USING removed_tasks r "
+                        + "WHERE tip.task_def_name = r.task_def_name AND tip.task_id = r.task_id";
+        // @formatter:on
+
+        execute(
+                connection,
+                REMOVE_WORKFLOW_REFERENCES,
+                q ->
+                        q.addParameter(names)
+                                .addParameter(dates)
+                                .addParameter(ids)
+                                .addParameter(names)
+                                .addParameter(ids)
+                                .addParameter(ids)
+                                .addParameter(ids)
+                                .executeDelete());
+        return ids;
     }
 
     private void addPendingWorkflow(Connection connection, String workflowType, String workflowId) {
@@ -806,54 +1312,6 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                                 .executeUpdate());
     }
 
-    private void removeWorkflowDefToWorkflowMapping(Connection connection, WorkflowModel workflow) {
-        String REMOVE_WORKFLOW_DEF_TO_WORKFLOW =
-                "DELETE FROM workflow_def_to_workflow WHERE workflow_def = ? AND date_str = ? AND workflow_id = ?";
-
-        execute(
-                connection,
-                REMOVE_WORKFLOW_DEF_TO_WORKFLOW,
-                q ->
-                        q.addParameter(workflow.getWorkflowName())
-                                .addParameter(dateStr(workflow.getCreateTime()))
-                                .addParameter(workflow.getWorkflowId())
-                                .executeUpdate());
-    }
-
-    @VisibleForTesting
-    boolean addScheduledTask(Connection connection, TaskModel task, String taskKey) {
-
-        final String EXISTS_SCHEDULED_TASK =
-                "SELECT EXISTS(SELECT 1 FROM task_scheduled where workflow_id = ? AND task_key = ?)";
-
-        boolean exists =
-                query(
-                        connection,
-                        EXISTS_SCHEDULED_TASK,
-                        q ->
-                                q.addParameter(task.getWorkflowInstanceId())
-                                        .addParameter(taskKey)
-                                        .exists());
-
-        if (!exists) {
-            final String INSERT_IGNORE_SCHEDULED_TASK =
-                    "INSERT INTO task_scheduled (workflow_id, task_key, task_id) VALUES (?, ?, ?) ON CONFLICT (workflow_id,task_key) DO NOTHING";
-
-            int count =
-                    query(
-                            connection,
-                            INSERT_IGNORE_SCHEDULED_TASK,
-                            q ->
-                                    q.addParameter(task.getWorkflowInstanceId())
-                                            .addParameter(taskKey)
-                                            .addParameter(task.getTaskId())
-                                            .executeUpdate());
-            return count > 0;
-        } else {
-            return false;
-        }
-    }
-
     private void removeScheduledTask(Connection connection, TaskModel task, String taskKey) {
         String REMOVE_SCHEDULED_TASK =
                 "DELETE FROM task_scheduled WHERE workflow_id = ? AND task_key = ?";
@@ -866,34 +1324,6 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                                 .executeDelete());
     }
 
-    private void addTaskInProgress(Connection connection, TaskModel task) {
-        String EXISTS_IN_PROGRESS_TASK =
-                "SELECT EXISTS(SELECT 1 FROM task_in_progress WHERE task_def_name = ? AND task_id = ?)";
-
-        boolean exists =
-                query(
-                        connection,
-                        EXISTS_IN_PROGRESS_TASK,
-                        q ->
-                                q.addParameter(task.getTaskDefName())
-                                        .addParameter(task.getTaskId())
-                                        .exists());
-
-        if (!exists) {
-            String INSERT_IN_PROGRESS_TASK =
-                    "INSERT INTO task_in_progress (task_def_name, task_id, workflow_id) VALUES (?, ?, ?)";
-
-            execute(
-                    connection,
-                    INSERT_IN_PROGRESS_TASK,
-                    q ->
-                            q.addParameter(task.getTaskDefName())
-                                    .addParameter(task.getTaskId())
-                                    .addParameter(task.getWorkflowInstanceId())
-                                    .executeUpdate());
-        }
-    }
-
     private void removeTaskInProgress(Connection connection, TaskModel task) {
         String REMOVE_IN_PROGRESS_TASK =
                 "DELETE FROM task_in_progress WHERE task_def_name = ? AND task_id = ?";
@@ -984,31 +1414,6 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                                 .executeUpdate());
     }
 
-    private EventExecution readEventExecution(
-            Connection connection,
-            String eventHandlerName,
-            String eventName,
-            String messageId,
-            String executionId) {
-        // @formatter:off
-        String GET_EVENT_EXECUTION =
-                "SELECT json_data FROM event_execution "
-                        + "WHERE event_handler_name = ? "
-                        + "AND event_name = ? "
-                        + "AND message_id = ? "
-                        + "AND execution_id = ?";
-        // @formatter:on
-        return query(
-                connection,
-                GET_EVENT_EXECUTION,
-                q ->
-                        q.addParameter(eventHandlerName)
-                                .addParameter(eventName)
-                                .addParameter(messageId)
-                                .addParameter(executionId)
-                                .executeAndFetchFirst(EventExecution.class));
-    }
-
     private void insertOrUpdatePollData(Connection connection, PollData pollData, String domain) {
         /*
          * Most times the row will be updated so let's try the update first. This used to be an 'INSERT/ON CONFLICT do update' sql statement. The problem with that
@@ -1041,6 +1446,37 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         }
     }
 
+    /** Upserts the latest poll of each queue and domain buffered since the last flush at once. */
+    private void storePollData(List<PollData> pollData) {
+        List<String> queueNames = new ArrayList<>(pollData.size());
+        List<String> domains = new ArrayList<>(pollData.size());
+        List<String> jsonData = new ArrayList<>(pollData.size());
+        for (PollData data : pollData) {
+            queueNames.add(data.getQueueName());
+            domains.add((data.getDomain() == null) ? "DEFAULT" : data.getDomain());
+            jsonData.add(toJson(data));
+        }
+        // @formatter:off
+        String UPSERT_POLL_DATA =
+                "INSERT INTO poll_data (queue_name, domain, json_data, modified_on) "
+                        + "SELECT queue_name, domain, json_data, CURRENT_TIMESTAMP "
+                        + "FROM unnest(?::varchar[], ?::varchar[], ?::text[]) "
+                        + "AS p(queue_name, domain, json_data) "
+                        + "ON CONFLICT (queue_name, domain) DO UPDATE "
+                        + "SET json_data = excluded.json_data, modified_on = excluded.modified_on";
+        // @formatter:on
+        withTransaction(
+                tx ->
+                        execute(
+                                tx,
+                                UPSERT_POLL_DATA,
+                                q ->
+                                        q.addParameter(queueNames)
+                                                .addParameter(domains)
+                                                .addParameter(jsonData)
+                                                .executeUpdate()));
+    }
+
     private PollData readPollData(Connection connection, String queueName, String domain) {
         String GET_POLL_DATA =
                 "SELECT json_data FROM poll_data WHERE queue_name = ? AND domain = ?";
@@ -1059,18 +1495,6 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 GET_ALL_POLL_DATA, q -> q.addParameter(queueName).executeAndFetch(PollData.class));
     }
 
-    private List<String> findAllTasksInProgressInOrderOfArrival(TaskModel task, int limit) {
-        String GET_IN_PROGRESS_TASKS_WITH_LIMIT =
-                "SELECT task_id FROM task_in_progress WHERE task_def_name = ? ORDER BY created_on LIMIT ?";
-
-        return queryWithTransaction(
-                GET_IN_PROGRESS_TASKS_WITH_LIMIT,
-                q ->
-                        q.addParameter(task.getTaskDefName())
-                                .addParameter(limit)
-                                .executeScalarList(String.class));
-    }
-
     private void validate(TaskModel task) {
         Preconditions.checkNotNull(task, "task object cannot be null");
         Preconditions.checkNotNull(task.getTaskId(), "Task id cannot be null");
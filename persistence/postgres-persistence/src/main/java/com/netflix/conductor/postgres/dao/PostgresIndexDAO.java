@@ -11,15 +11,22 @@
  */
 package com.netflix.conductor.postgres.dao;
 
-import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.common.metadata.events.EventExecution;
@@ -29,37 +36,162 @@ import com.netflix.conductor.common.run.TaskSummary;
 import com.netflix.conductor.common.run.WorkflowSummary;
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.dao.IndexDAO;
+import com.netflix.conductor.postgres.config.PostgresProperties;
+import com.netflix.conductor.postgres.util.CoalescingBatchQueue;
+import com.netflix.conductor.postgres.util.CursorSearchResult;
 import com.netflix.conductor.postgres.util.PostgresIndexQueryBuilder;
+import com.netflix.conductor.postgres.util.Query;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 
 public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
 
+    private static final String TASK_EXECUTION_LOG_PARTITION_PREFIX = "task_execution_logs_";
+
+    private final CoalescingBatchQueue<WorkflowSummary> workflowIndexQueue;
+    private final CoalescingBatchQueue<TaskSummary> taskIndexQueue;
+    private final CoalescingBatchQueue<TaskExecLog> taskExecutionLogQueue;
+    private final ScheduledExecutorService indexExecutor;
+    private final long countEstimateThreshold;
+    private final int taskExecutionLogRetentionDays;
+
     public PostgresIndexDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            PostgresProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
+        this.countEstimateThreshold = properties.getSearchCountEstimateThreshold();
+        this.taskExecutionLogRetentionDays =
+                (int) properties.getTaskExecutionLogRetention().toDays();
+        this.workflowIndexQueue =
+                new CoalescingBatchQueue<>(
+                        "workflowIndexQueue",
+                        properties.getAsyncIndexingQueueSize(),
+                        properties.getAsyncIndexingBatchSize(),
+                        WorkflowSummary::getWorkflowId,
+                        this::indexWorkflows);
+        this.taskIndexQueue =
+                new CoalescingBatchQueue<>(
+                        "taskIndexQueue",
+                        properties.getAsyncIndexingQueueSize(),
+                        properties.getAsyncIndexingBatchSize(),
+                        TaskSummary::getTaskId,
+                        this::indexTasks);
+        this.taskExecutionLogQueue =
+                new CoalescingBatchQueue<>(
+                        "logQueue",
+                        properties.getAsyncIndexingQueueSize(),
+                        properties.getAsyncIndexingBatchSize(),
+                        null,
+                        this::addTaskExecutionLogs);
+        this.indexExecutor =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "postgres-index-flush");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        long flushIntervalMs = Math.max(properties.getAsyncIndexingFlushInterval().toMillis(), 1);
+        indexExecutor.scheduleWithFixedDelay(
+                this::flushIndexQueues, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        indexExecutor.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        maintainTaskExecutionLogPartitions();
+                    } catch (Exception e) {
+                        logger.error("Unable to maintain the task execution log partitions", e);
+                    }
+                },
+                0,
+                1,
+                TimeUnit.HOURS);
+    }
+
+    /**
+     * Stops flushing periodically and stores the documents still queued for async indexing, the
+     * callers of those that can't be stored are notified of the failure.
+     */
+    @PreDestroy
+    public void destroy() {
+        indexExecutor.shutdown();
+        try {
+            indexExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workflowIndexQueue.drain();
+        taskIndexQueue.drain();
+        taskExecutionLogQueue.drain();
+    }
+
+    private void flushIndexQueues() {
+        boolean pending;
+        do {
+            pending = workflowIndexQueue.flushBatch();
+            pending |= taskIndexQueue.flushBatch();
+            pending |= taskExecutionLogQueue.flushBatch();
+        } while (pending);
     }
 
     @Override
     public void indexWorkflow(WorkflowSummary workflow) {
+        indexWorkflows(Collections.singletonList(workflow));
+    }
+
+    /**
+     * Upserts workflows with distinct ids in one statement. A workflow already indexed with a later
+     * update time is left as it is, so that an older version written late does not replace it.
+     */
+    private void indexWorkflows(List<WorkflowSummary> workflows) {
+        // @formatter:off
         String INSERT_WORKFLOW_INDEX_SQL =
-                "INSERT INTO workflow_index (workflow_id, correlation_id, workflow_type, start_time, status, json_data)"
-                        + "VALUES (?, ?, ?, ?, ?, ?::JSONB) ON CONFLICT (workflow_id) \n"
+                "INSERT INTO workflow_index (workflow_id, correlation_id, workflow_type, start_time, update_time, status, json_data) "
+                        + "SELECT workflow_id, correlation_id, workflow_type, start_time, update_time, status, json_data::JSONB "
+                        + "FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::timestamptz[], ?::timestamptz[], ?::varchar[], ?::text[]) "
+                        + "AS w(workflow_id, correlation_id, workflow_type, start_time, update_time, status, json_data) "
+                        + "ON CONFLICT (workflow_id) "
                         + "DO UPDATE SET correlation_id = EXCLUDED.correlation_id, workflow_type = EXCLUDED.workflow_type, "
-                        + "start_time = EXCLUDED.start_time, status = EXCLUDED.status, json_data = EXCLUDED.json_data";
-
-        TemporalAccessor ta = DateTimeFormatter.ISO_INSTANT.parse(workflow.getStartTime());
-        Timestamp startTime = Timestamp.from(Instant.from(ta));
+                        + "start_time = EXCLUDED.start_time, update_time = EXCLUDED.update_time, status = EXCLUDED.status, "
+                        + "json_data = EXCLUDED.json_data "
+                        + "WHERE workflow_index.update_time IS NULL OR EXCLUDED.update_time >= workflow_index.update_time";
+        // @formatter:on
+
+        // upsert in id order so that concurrent batches lock the rows they share in the same order
+        List<WorkflowSummary> sorted = new ArrayList<>(workflows);
+        sorted.sort(Comparator.comparing(WorkflowSummary::getWorkflowId));
+        List<String> workflowIds = new ArrayList<>(sorted.size());
+        List<String> correlationIds = new ArrayList<>(sorted.size());
+        List<String> workflowTypes = new ArrayList<>(sorted.size());
+        List<String> startTimes = new ArrayList<>(sorted.size());
+        List<String> updateTimes = new ArrayList<>(sorted.size());
+        List<String> statuses = new ArrayList<>(sorted.size());
+        List<String> jsonData = new ArrayList<>(sorted.size());
+        for (WorkflowSummary workflow : sorted) {
+            workflowIds.add(workflow.getWorkflowId());
+            correlationIds.add(workflow.getCorrelationId());
+            workflowTypes.add(workflow.getWorkflowType());
+            startTimes.add(toInstant(workflow.getStartTime()).toString());
+            updateTimes.add(
+                    StringUtils.isEmpty(workflow.getUpdateTime())
+                            ? null
+                            : toInstant(workflow.getUpdateTime()).toString());
+            statuses.add(workflow.getStatus().toString());
+            jsonData.add(toJson(workflow));
+        }
 
         queryWithTransaction(
                 INSERT_WORKFLOW_INDEX_SQL,
                 q ->
-                        q.addParameter(workflow.getWorkflowId())
-                                .addParameter(workflow.getCorrelationId())
-                                .addParameter(workflow.getWorkflowType())
-                                .addParameter(startTime)
-                                .addParameter(workflow.getStatus().toString())
-                                .addJsonParameter(workflow)
+                        q.addParameter(workflowIds)
+                                .addParameter(correlationIds)
+                                .addParameter(workflowTypes)
+                                .addParameter(startTimes)
+                                .addParameter(updateTimes)
+                                .addParameter(statuses)
+                                .addParameter(jsonData)
                                 .executeUpdate());
     }
 
@@ -78,40 +210,87 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
                             return q.executeAndFetch(WorkflowSummary.class);
                         });
 
-        // To avoid making a second potentially expensive query to postgres say we've
-        // got enough results for another page so the pagination works
-        int totalHits = results.size() == count ? start + count + 1 : start + results.size();
-        return new SearchResult<>(totalHits, results);
+        return new SearchResult<>(countHits(queryBuilder, start, results.size(), count), results);
+    }
+
+    /**
+     * Searches a page of workflows following the one the cursor was returned with. Unlike {@link
+     * #searchWorkflowSummary(String, String, int, int, List)}, a page costs the same however deep
+     * it is, but it can only be sorted by fields that can't be null.
+     *
+     * @param cursor the next cursor of the previous page, null for the first page
+     */
+    public CursorSearchResult<WorkflowSummary> searchWorkflowSummary(
+            String query, String freeText, String cursor, int count, List<String> sort) {
+        PostgresIndexQueryBuilder queryBuilder =
+                new PostgresIndexQueryBuilder(
+                        "workflow_index", "workflow_id", query, freeText, cursor, count, sort);
+        return searchPage(queryBuilder, count, WorkflowSummary.class);
     }
 
     @Override
     public void indexTask(TaskSummary task) {
+        indexTasks(Collections.singletonList(task));
+    }
+
+    /**
+     * Upserts tasks with distinct ids in one statement. A task already indexed with a later update
+     * time is left as it is, so that an older version written late does not replace it.
+     */
+    private void indexTasks(List<TaskSummary> tasks) {
+        // @formatter:off
         String INSERT_TASK_INDEX_SQL =
-                "INSERT INTO task_index (task_id, task_type, task_def_name, status, start_time, update_time, workflow_type, json_data)"
-                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?::JSONB) ON CONFLICT (task_id) "
+                "INSERT INTO task_index (task_id, task_type, task_def_name, status, start_time, update_time, workflow_type, json_data) "
+                        + "SELECT task_id, task_type, task_def_name, status, start_time, update_time, workflow_type, json_data::JSONB "
+                        + "FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::timestamptz[], ?::timestamptz[], ?::varchar[], ?::text[]) "
+                        + "AS t(task_id, task_type, task_def_name, status, start_time, update_time, workflow_type, json_data) "
+                        + "ON CONFLICT (task_id) "
                         + "DO UPDATE SET task_type = EXCLUDED.task_type, task_def_name = EXCLUDED.task_def_name, "
-                        + "status = EXCLUDED.status, update_time = EXCLUDED.update_time, json_data = EXCLUDED.json_data";
-
-        TemporalAccessor updateTa = DateTimeFormatter.ISO_INSTANT.parse(task.getUpdateTime());
-        Timestamp updateTime = Timestamp.from(Instant.from(updateTa));
-
-        TemporalAccessor startTa = DateTimeFormatter.ISO_INSTANT.parse(task.getStartTime());
-        Timestamp startTime = Timestamp.from(Instant.from(startTa));
+                        + "status = EXCLUDED.status, update_time = EXCLUDED.update_time, json_data = EXCLUDED.json_data "
+                        + "WHERE EXCLUDED.update_time >= task_index.update_time";
+        // @formatter:on
+
+        // upsert in id order so that concurrent batches lock the rows they share in the same order
+        List<TaskSummary> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparing(TaskSummary::getTaskId));
+        List<String> taskIds = new ArrayList<>(sorted.size());
+        List<String> taskTypes = new ArrayList<>(sorted.size());
+        List<String> taskDefNames = new ArrayList<>(sorted.size());
+        List<String> statuses = new ArrayList<>(sorted.size());
+        List<String> startTimes = new ArrayList<>(sorted.size());
+        List<String> updateTimes = new ArrayList<>(sorted.size());
+        List<String> workflowTypes = new ArrayList<>(sorted.size());
+        List<String> jsonData = new ArrayList<>(sorted.size());
+        for (TaskSummary task : sorted) {
+            taskIds.add(task.getTaskId());
+            taskTypes.add(task.getTaskType());
+            taskDefNames.add(task.getTaskDefName());
+            statuses.add(task.getStatus().toString());
+            startTimes.add(toInstant(task.getStartTime()).toString());
+            updateTimes.add(toInstant(task.getUpdateTime()).toString());
+            workflowTypes.add(task.getWorkflowType());
+            jsonData.add(toJson(task));
+        }
 
         queryWithTransaction(
                 INSERT_TASK_INDEX_SQL,
                 q ->
-                        q.addParameter(task.getTaskId())
-                                .addParameter(task.getTaskType())
-                                .addParameter(task.getTaskDefName())
-                                .addParameter(task.getStatus().toString())
-                                .addParameter(startTime)
-                                .addParameter(updateTime)
-                                .addParameter(task.getWorkflowType())
-                                .addJsonParameter(task)
+                        q.addParameter(taskIds)
+                                .addParameter(taskTypes)
+                                .addParameter(taskDefNames)
+                                .addParameter(statuses)
+                                .addParameter(startTimes)
+                                .addParameter(updateTimes)
+                                .addParameter(workflowTypes)
+                                .addParameter(jsonData)
                                 .executeUpdate());
     }
 
+    private static Instant toInstant(String isoInstant) {
+        TemporalAccessor ta = DateTimeFormatter.ISO_INSTANT.parse(isoInstant);
+        return Instant.from(ta);
+    }
+
     @Override
     public SearchResult<TaskSummary> searchTaskSummary(
             String query, String freeText, int start, int count, List<String> sort) {
@@ -126,24 +305,174 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
                             return q.executeAndFetch(TaskSummary.class);
                         });
 
-        // To avoid making a second potentially expensive query to postgres say we've
-        // got enough results for another page so the pagination works
-        int totalHits = results.size() == count ? start + count + 1 : start + results.size();
-        return new SearchResult<>(totalHits, results);
+        return new SearchResult<>(countHits(queryBuilder, start, results.size(), count), results);
+    }
+
+    /**
+     * Searches a page of tasks following the one the cursor was returned with. Unlike {@link
+     * #searchTaskSummary(String, String, int, int, List)}, a page costs the same however deep it
+     * is, but it can only be sorted by fields that can't be null.
+     *
+     * @param cursor the next cursor of the previous page, null for the first page
+     */
+    public CursorSearchResult<TaskSummary> searchTaskSummary(
+            String query, String freeText, String cursor, int count, List<String> sort) {
+        PostgresIndexQueryBuilder queryBuilder =
+                new PostgresIndexQueryBuilder(
+                        "task_index", "task_id", query, freeText, cursor, count, sort);
+        return searchPage(queryBuilder, count, TaskSummary.class);
+    }
+
+    private <T> CursorSearchResult<T> searchPage(
+            PostgresIndexQueryBuilder queryBuilder, int count, Class<T> resultClass) {
+        int sortKeyCount = queryBuilder.getSortKeyCount();
+        List<T> results = new ArrayList<>(count);
+        List<String> lastSortKeyValues = new ArrayList<>(sortKeyCount);
+        boolean hasNextPage =
+                queryWithTransaction(
+                        queryBuilder.getQuery(),
+                        q -> {
+                            queryBuilder.addParameters(q);
+                            return q.executeAndFetch(
+                                    rs -> {
+                                        results.clear();
+                                        while (rs.next()) {
+                                            if (results.size() == count) {
+                                                return true;
+                                            }
+                                            results.add(readValue(rs.getString(1), resultClass));
+                                            lastSortKeyValues.clear();
+                                            for (int i = 0; i < sortKeyCount; i++) {
+                                                lastSortKeyValues.add(rs.getString(i + 2));
+                                            }
+                                        }
+                                        return false;
+                                    });
+                        });
+
+        long totalHits =
+                hasNextPage || queryBuilder.hasCursor()
+                        ? countHits(queryBuilder)
+                        : results.size();
+        String nextCursor = hasNextPage ? queryBuilder.getCursor(lastSortKeyValues) : null;
+        return new CursorSearchResult<>(totalHits, results, nextCursor);
+    }
+
+    /**
+     * @return the exact total when the page is the last one, otherwise counted by {@link
+     *     #countHits(PostgresIndexQueryBuilder)} but at least as many as the rows up to the page
+     */
+    private long countHits(PostgresIndexQueryBuilder queryBuilder, int start, int size, int count) {
+        if (size < count && (size > 0 || start == 0)) {
+            return start + size;
+        }
+        return Math.max(countHits(queryBuilder), start + size);
+    }
+
+    /**
+     * Counts the rows matching a search exactly when the planner expects few of them. Broader
+     * searches report the planner's estimate instead, so that their pages don't scan every match.
+     */
+    private long countHits(PostgresIndexQueryBuilder queryBuilder) {
+        long estimate =
+                queryWithTransaction(
+                        queryBuilder.getCountEstimateQuery(),
+                        q -> {
+                            queryBuilder.addConditionParameters(q);
+                            String plan = q.executeScalar(String.class);
+                            return readValue(plan, JsonNode.class)
+                                    .at("/0/Plan/Plan Rows")
+                                    .asLong();
+                        });
+        if (estimate > countEstimateThreshold) {
+            return estimate;
+        }
+        return queryWithTransaction(
+                queryBuilder.getCountQuery(),
+                q -> {
+                    queryBuilder.addConditionParameters(q);
+                    return q.executeScalar(Long.class);
+                });
     }
 
     @Override
     public void addTaskExecutionLogs(List<TaskExecLog> logs) {
-        String INSERT_LOG =
-                "INSERT INTO task_execution_logs (task_id, created_time, log) VALUES (?, ?, ?)";
+        if (logs.isEmpty()) {
+            return;
+        }
+        // @formatter:off
+        String INSERT_LOGS =
+                "INSERT INTO task_execution_logs (task_id, created_time, log) "
+                        + "SELECT * FROM unnest(?::varchar[], ?::timestamptz[], ?::text[])";
+        // @formatter:on
+
+        List<String> taskIds = new ArrayList<>(logs.size());
+        List<String> createdTimes = new ArrayList<>(logs.size());
+        List<String> messages = new ArrayList<>(logs.size());
         for (TaskExecLog log : logs) {
-            queryWithTransaction(
-                    INSERT_LOG,
-                    q ->
-                            q.addParameter(log.getTaskId())
-                                    .addParameter(new Timestamp(log.getCreatedTime()))
-                                    .addParameter(log.getLog())
-                                    .executeUpdate());
+            taskIds.add(log.getTaskId());
+            createdTimes.add(Instant.ofEpochMilli(log.getCreatedTime()).toString());
+            messages.add(log.getLog());
+        }
+
+        queryWithTransaction(
+                INSERT_LOGS,
+                q ->
+                        q.addParameter(taskIds)
+                                .addParameter(createdTimes)
+                                .addParameter(messages)
+                                .executeUpdate());
+    }
+
+    /**
+     * Adds the task execution log partitions of this month and the next one, and drops the
+     * partitions whose whole month is past the retention when there is one.
+     */
+    @VisibleForTesting
+    void maintainTaskExecutionLogPartitions() {
+        YearMonth month = YearMonth.now(ZoneOffset.UTC);
+        withTransaction(
+                tx -> {
+                    for (YearMonth added : Arrays.asList(month, month.plusMonths(1))) {
+                        query(
+                                tx,
+                                "SELECT task_execution_logs_add_partition(?::DATE)",
+                                q ->
+                                        q.addParameter(added.atDay(1).toString())
+                                                .executeScalar(String.class));
+                    }
+                });
+        if (taskExecutionLogRetentionDays <= 0) {
+            return;
+        }
+
+        // @formatter:off
+        String GET_PARTITIONS =
+                "SELECT c.relname FROM pg_inherits i "
+                        + "INNER JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = 'task_execution_logs'::regclass";
+        // @formatter:on
+        YearMonth oldestKept =
+                YearMonth.from(
+                        Instant.now()
+                                .minus(Duration.ofDays(taskExecutionLogRetentionDays))
+                                .atOffset(ZoneOffset.UTC));
+        List<String> partitions =
+                queryWithTransaction(GET_PARTITIONS, q -> q.executeScalarList(String.class));
+        for (String partition : partitions) {
+            String suffix = partition.substring(TASK_EXECUTION_LOG_PARTITION_PREFIX.length());
+            if (!suffix.matches("\\d{6}")) {
+                continue;
+            }
+            YearMonth partitionMonth =
+                    YearMonth.of(
+                            Integer.parseInt(suffix.substring(0, 4)),
+                            Integer.parseInt(suffix.substring(4)));
+            if (partitionMonth.isBefore(oldestKept)) {
+                logger.info("Dropping task execution log partition {}", partition);
+                executeWithTransaction(
+                        String.format("DROP TABLE %s", partition), Query::executeUpdate);
+            }
         }
     }
 
@@ -173,14 +502,32 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
 
     @Override
     public CompletableFuture<Void> asyncIndexWorkflow(WorkflowSummary workflow) {
-        logger.info("asyncIndexWorkflow is not supported for postgres indexing");
-        return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> indexed = workflowIndexQueue.offer(workflow);
+        if (indexed != null) {
+            return indexed;
+        }
+        // the queue is full, index on the caller to slow it down to the pace of the database
+        try {
+            indexWorkflow(workflow);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     @Override
     public CompletableFuture<Void> asyncIndexTask(TaskSummary task) {
-        logger.info("asyncIndexTask is not supported for postgres indexing");
-        return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> indexed = taskIndexQueue.offer(task);
+        if (indexed != null) {
+            return indexed;
+        }
+        // the queue is full, index on the caller to slow it down to the pace of the database
+        try {
+            indexTask(task);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     @Override
@@ -251,8 +598,23 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
 
     @Override
     public CompletableFuture<Void> asyncAddTaskExecutionLogs(List<TaskExecLog> logs) {
-        logger.info("asyncAddTaskExecutionLogs is not supported for postgres indexing");
-        return CompletableFuture.completedFuture(null);
+        List<CompletableFuture<Void>> added = new ArrayList<>(logs.size());
+        List<TaskExecLog> overflow = new ArrayList<>();
+        for (TaskExecLog log : logs) {
+            CompletableFuture<Void> logAdded = taskExecutionLogQueue.offer(log);
+            if (logAdded != null) {
+                added.add(logAdded);
+            } else {
+                overflow.add(log);
+            }
+        }
+        // the queue is full, add the rest on the caller to slow it down to the pace of the database
+        try {
+            addTaskExecutionLogs(overflow);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.allOf(added.toArray(new CompletableFuture[0]));
     }
 
     @Override
@@ -296,7 +658,9 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
     }
 
     public long getWorkflowCount(String query, String freeText) {
-        logger.info("getWorkflowCount is not supported for postgres indexing");
-        return 0;
+        PostgresIndexQueryBuilder queryBuilder =
+                new PostgresIndexQueryBuilder(
+                        "workflow_index", query, freeText, 0, 0, Collections.emptyList());
+        return countHits(queryBuilder);
     }
 }
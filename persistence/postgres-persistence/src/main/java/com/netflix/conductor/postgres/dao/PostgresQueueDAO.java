@@ -13,40 +13,126 @@ package com.netflix.conductor.postgres.dao;
 
 import java.sql.Connection;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
 import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.core.events.queue.Message;
-import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.conductor.dao.BulkQueueDAO;
+import com.netflix.conductor.postgres.config.PostgresProperties;
+import com.netflix.conductor.postgres.util.PostgresQueueListener;
 import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Uninterruptibles;
 
-public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
+/**
+ * Queue implementation on the queue_message table, which is hash partitioned by queue_name: every
+ * statement working on a single queue filters on queue_name so that it only touches the partition
+ * of that queue.
+ *
+ * <p>When {@code queueDelayThreshold} is set, messages pushed with a longer delay are kept in the
+ * queue_message_delayed timer table, bucketed by delivery time, and moved to queue_message in
+ * batches shortly before they are due.
+ */
+public class PostgresQueueDAO extends PostgresBaseDAO implements BulkQueueDAO {
+
+    /** Lease given to popped messages until their unack timeout is set explicitly. */
+    private static final long UNACK_TIMEOUT_SECONDS = 60;
+
+    /** Maximum number of expired leases released by a single statement of processAllUnacks. */
+    private static final int UNACK_BATCH_SIZE = 1000;
+
+    /**
+     * Upper bound of a single wait for a push notification, so that delayed messages becoming due
+     * and un-acked messages being released are still picked up by long polls.
+     */
+    private static final long MAX_NOTIFICATION_WAIT_MS = 1000;
+
+    /** Maximum number of delayed messages moved to their queues by a single statement. */
+    private static final int DELAYED_MOVE_BATCH_SIZE = 1000;
 
-    private static final Long UNACK_SCHEDULE_MS = 60_000L;
+    private final PostgresQueueListener queueListener;
+
+    /** Queues known to exist in the queue table, queues are never removed from it. */
+    private final Set<String> queues = ConcurrentHashMap.newKeySet();
+
+    private final long queueDepthCacheMillis;
+    private volatile QueueDepthSnapshot queueDepthSnapshot;
+
+    private final long delayThresholdSeconds;
+    private final long delayBucketSeconds;
+
+    /** Whether the timer table may hold messages, pushed now or before the threshold was unset. */
+    private final boolean delayedMessages;
+
+    private final ScheduledExecutorService delayedMessagesExecutor;
 
     public PostgresQueueDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            PostgresProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
 
-        Executors.newSingleThreadScheduledExecutor()
-                .scheduleAtFixedRate(
-                        this::processAllUnacks,
-                        UNACK_SCHEDULE_MS,
-                        UNACK_SCHEDULE_MS,
-                        TimeUnit.MILLISECONDS);
+        this.queueListener =
+                properties.isQueueNotificationsEnabled()
+                        ? new PostgresQueueListener(dataSource)
+                        : null;
+        this.queueDepthCacheMillis = properties.getQueueDepthCacheDuration().toMillis();
+        this.delayThresholdSeconds = properties.getQueueDelayThreshold().getSeconds();
+        this.delayBucketSeconds =
+                Math.max(properties.getQueueDelayBucketDuration().getSeconds(), 1);
+
+        refreshQueues();
+
+        // keep moving the messages delayed before the timer table was disabled until it drains
+        this.delayedMessages = delayThresholdSeconds > 0 || hasDelayedMessages();
+        if (delayedMessages) {
+            long moveIntervalMs = Math.max(delayBucketSeconds * 1000 / 2, 1000);
+            this.delayedMessagesExecutor = Executors.newSingleThreadScheduledExecutor();
+            delayedMessagesExecutor.scheduleWithFixedDelay(
+                    () -> {
+                        try {
+                            moveDelayedMessages();
+                        } catch (Exception e) {
+                            logger.error("Unable to move due delayed messages", e);
+                        }
+                    },
+                    moveIntervalMs,
+                    moveIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.delayedMessagesExecutor = null;
+        }
         logger.debug(PostgresQueueDAO.class.getName() + " is ready to serve");
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (delayedMessagesExecutor != null) {
+            delayedMessagesExecutor.shutdown();
+            try {
+                delayedMessagesExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (queueListener != null) {
+            queueListener.close();
+        }
+    }
+
     @Override
     public void push(String queueName, String messageId, long offsetTimeInSecond) {
         push(queueName, messageId, 0, offsetTimeInSecond);
@@ -54,23 +140,18 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
 
     @Override
     public void push(String queueName, String messageId, int priority, long offsetTimeInSecond) {
+        createQueueIfNotExists(queueName);
         withTransaction(
                 tx -> pushMessage(tx, queueName, messageId, null, priority, offsetTimeInSecond));
     }
 
     @Override
     public void push(String queueName, List<Message> messages) {
-        withTransaction(
-                tx ->
-                        messages.forEach(
-                                message ->
-                                        pushMessage(
-                                                tx,
-                                                queueName,
-                                                message.getId(),
-                                                message.getPayload(),
-                                                message.getPriority(),
-                                                0)));
+        if (messages.isEmpty()) {
+            return;
+        }
+        createQueueIfNotExists(queueName);
+        withTransaction(tx -> pushMessages(tx, queueName, messages));
     }
 
     @Override
@@ -81,6 +162,7 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
     @Override
     public boolean pushIfNotExists(
             String queueName, String messageId, int priority, long offsetTimeInSecond) {
+        createQueueIfNotExists(queueName);
         return getWithRetriedTransactions(
                 tx -> {
                     if (!existsMessage(tx, queueName, messageId)) {
@@ -114,6 +196,8 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
         final List<Message> messages = new ArrayList<>();
 
         while (true) {
+            long generation =
+                    queueListener != null ? queueListener.getGeneration(queueName) : 0;
             List<Message> messagesSlice =
                     getWithTransactionWithOutErrorPropagation(
                             tx -> popMessages(tx, queueName, count - messages.size(), timeout));
@@ -131,7 +215,13 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
             if (messages.size() >= count || ((System.currentTimeMillis() - start) > timeout)) {
                 return messages;
             }
-            Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            if (queueListener != null && queueListener.isListening()) {
+                long remaining = timeout - (System.currentTimeMillis() - start);
+                queueListener.await(
+                        queueName, generation, Math.min(remaining, MAX_NOTIFICATION_WAIT_MS));
+            } else {
+                Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            }
         }
     }
 
@@ -142,7 +232,12 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
 
     @Override
     public int getSize(String queueName) {
-        final String GET_QUEUE_SIZE = "SELECT COUNT(*) FROM queue_message WHERE queue_name = ?";
+        if (queueDepthCacheMillis > 0) {
+            QueueDepth depth = getQueueDepths().get(queueName);
+            return depth == null ? 0 : (int) (depth.ready + depth.unacked);
+        }
+        final String GET_QUEUE_SIZE =
+                "SELECT COALESCE(SUM(ready + unacked), 0) FROM queue_depth WHERE queue_name = ?";
         return queryWithTransaction(
                 GET_QUEUE_SIZE, q -> ((Long) q.addParameter(queueName).executeCount()).intValue());
     }
@@ -152,170 +247,193 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
         return getWithRetriedTransactions(tx -> removeMessage(tx, queueName, messageId));
     }
 
+    /**
+     * Acknowledges many messages of a queue with a single statement.
+     *
+     * @return the ids of the messages that were acknowledged
+     */
+    @Override
+    public List<String> ack(String queueName, List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return getWithRetriedTransactions(tx -> removeMessages(tx, queueName, messageIds));
+    }
+
+    /** Removes many messages of a queue with a single statement. */
+    @Override
+    public void remove(String queueName, List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        withTransaction(tx -> removeMessages(tx, queueName, messageIds));
+    }
+
+    /** Ends the leases of many popped messages of a queue with a single statement. */
+    @Override
+    public void release(String queueName, List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        final String RELEASE_MESSAGES =
+                "UPDATE queue_message SET popped = false, unack_on = NULL "
+                        + "WHERE queue_name = ? AND message_id = ANY(?) AND popped = true";
+        executeWithTransaction(
+                RELEASE_MESSAGES,
+                q -> q.addParameter(queueName).addParameter(messageIds).executeUpdate());
+    }
+
     @Override
     public boolean setUnackTimeout(String queueName, String messageId, long unackTimeout) {
         long updatedOffsetTimeInSecond = unackTimeout / 1000;
 
         final String UPDATE_UNACK_TIMEOUT =
-                "UPDATE queue_message SET offset_time_seconds = ?, deliver_on = (current_timestamp + (? ||' seconds')::interval) WHERE queue_name = ? AND message_id = ?";
+                "UPDATE queue_message SET offset_time_seconds = ?, deliver_on = (current_timestamp + (? ||' seconds')::interval), unack_on = (current_timestamp + (? ||' seconds')::interval) WHERE queue_name = ? AND message_id = ?";
 
-        return queryWithTransaction(
-                        UPDATE_UNACK_TIMEOUT,
-                        q ->
-                                q.addParameter(updatedOffsetTimeInSecond)
-                                        .addParameter(updatedOffsetTimeInSecond)
-                                        .addParameter(queueName)
-                                        .addParameter(messageId)
-                                        .executeUpdate())
-                == 1;
+        return getWithRetriedTransactions(
+                tx -> {
+                    int updated =
+                            query(
+                                    tx,
+                                    UPDATE_UNACK_TIMEOUT,
+                                    q ->
+                                            q.addParameter(updatedOffsetTimeInSecond)
+                                                    .addParameter(updatedOffsetTimeInSecond)
+                                                    .addParameter(updatedOffsetTimeInSecond)
+                                                    .addParameter(queueName)
+                                                    .addParameter(messageId)
+                                                    .executeUpdate());
+                    return updated == 1
+                            || promoteDelayedMessage(
+                                    tx, queueName, messageId, updatedOffsetTimeInSecond);
+                });
     }
 
     @Override
     public void flush(String queueName) {
         final String FLUSH_QUEUE = "DELETE FROM queue_message WHERE queue_name = ?";
-        executeWithTransaction(FLUSH_QUEUE, q -> q.addParameter(queueName).executeDelete());
+        final String FLUSH_DELAYED = "DELETE FROM queue_message_delayed WHERE queue_name = ?";
+        withTransaction(
+                tx -> {
+                    execute(tx, FLUSH_QUEUE, q -> q.addParameter(queueName).executeDelete());
+                    if (delayedMessages) {
+                        execute(tx, FLUSH_DELAYED, q -> q.addParameter(queueName).executeDelete());
+                    }
+                });
     }
 
     @Override
     public Map<String, Long> queuesDetail() {
-        final String GET_QUEUES_DETAIL =
-                "SELECT queue_name, (SELECT count(*) FROM queue_message WHERE popped = false AND queue_name = q.queue_name) AS size FROM queue q FOR SHARE SKIP LOCKED";
-        return queryWithTransaction(
-                GET_QUEUES_DETAIL,
-                q ->
-                        q.executeAndFetch(
-                                rs -> {
-                                    Map<String, Long> detail = Maps.newHashMap();
-                                    while (rs.next()) {
-                                        String queueName = rs.getString("queue_name");
-                                        Long size = rs.getLong("size");
-                                        detail.put(queueName, size);
-                                    }
-                                    return detail;
-                                }));
+        Map<String, Long> detail = Maps.newHashMap();
+        getQueueDepths().forEach((queueName, depth) -> detail.put(queueName, depth.ready));
+        return detail;
     }
 
     @Override
     public Map<String, Map<String, Map<String, Long>>> queuesDetailVerbose() {
+        Map<String, Map<String, Map<String, Long>>> result = Maps.newHashMap();
+        getQueueDepths()
+                .forEach(
+                        (queueName, depth) ->
+                                result.put(
+                                        queueName,
+                                        ImmutableMap.of(
+                                                "a",
+                                                ImmutableMap.of( // sharding not implemented,
+                                                        // returning only
+                                                        // one shard with all the
+                                                        // info
+                                                        "size",
+                                                        depth.ready,
+                                                        "uacked",
+                                                        depth.unacked))));
+        return result;
+    }
+
+    /**
+     * @return the depth of every queue, from a node-local snapshot when approximate depths are
+     *     enabled with {@code queueDepthCacheDuration}
+     */
+    private Map<String, QueueDepth> getQueueDepths() {
+        if (queueDepthCacheMillis <= 0) {
+            return readQueueDepths();
+        }
+        QueueDepthSnapshot snapshot = queueDepthSnapshot;
+        long now = System.currentTimeMillis();
+        if (snapshot == null || now - snapshot.readAt > queueDepthCacheMillis) {
+            snapshot = new QueueDepthSnapshot(readQueueDepths(), now);
+            queueDepthSnapshot = snapshot;
+        }
+        return snapshot.depths;
+    }
+
+    private Map<String, QueueDepth> readQueueDepths() {
         // @formatter:off
-        final String GET_QUEUES_DETAIL_VERBOSE =
-                "SELECT queue_name, \n"
-                        + "       (SELECT count(*) FROM queue_message WHERE popped = false AND queue_name = q.queue_name) AS size,\n"
-                        + "       (SELECT count(*) FROM queue_message WHERE popped = true AND queue_name = q.queue_name) AS uacked \n"
-                        + "FROM queue q FOR SHARE SKIP LOCKED";
+        final String GET_QUEUE_DEPTHS =
+                "SELECT q.queue_name, COALESCE(SUM(d.ready), 0) AS size, COALESCE(SUM(d.unacked), 0) AS uacked \n"
+                        + "FROM queue q LEFT JOIN queue_depth d ON d.queue_name = q.queue_name \n"
+                        + "GROUP BY q.queue_name";
         // @formatter:on
 
         return queryWithTransaction(
-                GET_QUEUES_DETAIL_VERBOSE,
+                GET_QUEUE_DEPTHS,
                 q ->
                         q.executeAndFetch(
                                 rs -> {
-                                    Map<String, Map<String, Map<String, Long>>> result =
-                                            Maps.newHashMap();
+                                    Map<String, QueueDepth> depths = new HashMap<>();
                                     while (rs.next()) {
-                                        String queueName = rs.getString("queue_name");
-                                        Long size = rs.getLong("size");
-                                        Long queueUnacked = rs.getLong("uacked");
-                                        result.put(
-                                                queueName,
-                                                ImmutableMap.of(
-                                                        "a",
-                                                        ImmutableMap
-                                                                .of( // sharding not implemented,
-                                                                        // returning only
-                                                                        // one shard with all the
-                                                                        // info
-                                                                        "size",
-                                                                        size,
-                                                                        "uacked",
-                                                                        queueUnacked)));
+                                        depths.put(
+                                                rs.getString("queue_name"),
+                                                new QueueDepth(
+                                                        rs.getLong("size"),
+                                                        rs.getLong("uacked")));
                                     }
-                                    return result;
+                                    return depths;
                                 }));
     }
 
     /**
-     * Un-pop all un-acknowledged messages for all queues.
+     * Un-pop all un-acknowledged messages for all queues, in batches of {@value UNACK_BATCH_SIZE}.
+     * Nothing runs this periodically: pops already treat expired leases as visible, so releasing
+     * them only makes them count as ready again in the queue depths, which {@link
+     * #processUnacks(String)} also does for a single queue.
      *
      * @since 1.11.6
      */
     public void processAllUnacks() {
         logger.trace("processAllUnacks started");
 
-        getWithRetriedTransactions(
-                tx -> {
-                    String LOCK_TASKS =
-                            "SELECT queue_name, message_id FROM queue_message WHERE popped = true AND (deliver_on + (60 ||' seconds')::interval)  <  current_timestamp limit 1000 FOR UPDATE SKIP LOCKED";
-
-                    List<QueueMessage> messages =
-                            query(
-                                    tx,
-                                    LOCK_TASKS,
-                                    p ->
-                                            p.executeAndFetch(
-                                                    rs -> {
-                                                        List<QueueMessage> results =
-                                                                new ArrayList<QueueMessage>();
-                                                        while (rs.next()) {
-                                                            QueueMessage qm = new QueueMessage();
-                                                            qm.queueName =
-                                                                    rs.getString("queue_name");
-                                                            qm.messageId =
-                                                                    rs.getString("message_id");
-                                                            results.add(qm);
-                                                        }
-                                                        return results;
-                                                    }));
-
-                    if (messages.size() == 0) {
-                        return 0;
-                    }
-
-                    Map<String, List<String>> queueMessageMap = new HashMap<String, List<String>>();
-                    for (QueueMessage qm : messages) {
-                        if (!queueMessageMap.containsKey(qm.queueName)) {
-                            queueMessageMap.put(qm.queueName, new ArrayList<String>());
-                        }
-                        queueMessageMap.get(qm.queueName).add(qm.messageId);
-                    }
-
-                    int totalUnacked = 0;
-                    for (String queueName : queueMessageMap.keySet()) {
-                        Integer unacked = 0;
-                        ;
-                        try {
-                            final List<String> msgIds = queueMessageMap.get(queueName);
-                            final String UPDATE_POPPED =
-                                    String.format(
-                                            "UPDATE queue_message SET popped = false WHERE queue_name = ? and message_id IN (%s)",
-                                            Query.generateInBindings(msgIds.size()));
+        // @formatter:off
+        final String PROCESS_ALL_UNACKS =
+                "UPDATE queue_message SET popped = false WHERE (queue_name, message_id) IN ( \n"
+                        + "    SELECT queue_name, message_id FROM queue_message \n"
+                        + "    WHERE popped = true AND unack_on < current_timestamp \n"
+                        + "    LIMIT ? FOR UPDATE SKIP LOCKED)";
+        // @formatter:on
 
-                            unacked =
+        int total = 0;
+        int unacked;
+        do {
+            unacked =
+                    getWithRetriedTransactions(
+                            tx ->
                                     query(
                                             tx,
-                                            UPDATE_POPPED,
+                                            PROCESS_ALL_UNACKS,
                                             q ->
-                                                    q.addParameter(queueName)
-                                                            .addParameters(msgIds)
-                                                            .executeUpdate());
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                        totalUnacked += unacked;
-                        logger.debug("Unacked {} messages from all queues", unacked);
-                    }
-
-                    if (totalUnacked > 0) {
-                        logger.debug("Unacked {} messages from all queues", totalUnacked);
-                    }
-                    return totalUnacked;
-                });
+                                                    q.addParameter(UNACK_BATCH_SIZE)
+                                                            .executeUpdate()));
+            total += unacked;
+        } while (unacked == UNACK_BATCH_SIZE);
+        if (total > 0) {
+            logger.debug("Unacked {} messages from all queues", total);
+        }
     }
 
     @Override
     public void processUnacks(String queueName) {
         final String PROCESS_UNACKS =
-                "UPDATE queue_message SET popped = false WHERE queue_name = ? AND popped = true AND (current_timestamp - (60 ||' seconds')::interval)  > deliver_on";
+                "UPDATE queue_message SET popped = false WHERE queue_name = ? AND popped = true AND unack_on < current_timestamp";
         executeWithTransaction(PROCESS_UNACKS, q -> q.addParameter(queueName).executeUpdate());
     }
 
@@ -326,24 +444,154 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                 "UPDATE queue_message SET offset_time_seconds = ?, deliver_on = (current_timestamp + (? ||' seconds')::interval) \n"
                         + "WHERE queue_name = ? AND message_id = ?";
 
-        return queryWithTransaction(
-                SET_OFFSET_TIME,
+        return getWithRetriedTransactions(
+                tx -> {
+                    int updated =
+                            query(
+                                    tx,
+                                    SET_OFFSET_TIME,
+                                    q ->
+                                            q.addParameter(offsetTimeInSecond)
+                                                    .addParameter(offsetTimeInSecond)
+                                                    .addParameter(queueName)
+                                                    .addParameter(messageId)
+                                                    .executeUpdate());
+                    return updated == 1
+                            || promoteDelayedMessage(tx, queueName, messageId, offsetTimeInSecond);
+                });
+    }
+
+    /**
+     * Moves the messages of the timer table whose bucket starts within the next bucket to their
+     * queues, in batches. The moved messages keep their delivery time, polls only pick them up
+     * once they are due.
+     *
+     * @return the number of messages moved
+     */
+    @VisibleForTesting
+    int moveDelayedMessages() {
+        // @formatter:off
+        final String MOVE_DELAYED_MESSAGES =
+                "WITH due AS ( \n"
+                        + "    DELETE FROM queue_message_delayed WHERE (queue_name, message_id) IN ( \n"
+                        + "        SELECT queue_name, message_id FROM queue_message_delayed \n"
+                        + "        WHERE bucket <= (current_timestamp + (? ||' seconds')::interval) \n"
+                        + "        LIMIT ? FOR UPDATE SKIP LOCKED) \n"
+                        + "    RETURNING created_on, deliver_on, queue_name, message_id, priority, offset_time_seconds, payload), \n"
+                        + "moved AS ( \n"
+                        + "    INSERT INTO queue_message (created_on, deliver_on, queue_name, message_id, priority, offset_time_seconds, payload) \n"
+                        + "    SELECT created_on, deliver_on, queue_name, message_id, priority, offset_time_seconds, payload FROM due \n"
+                        + "    ON CONFLICT (queue_name, message_id) DO UPDATE SET payload = excluded.payload, deliver_on = excluded.deliver_on \n"
+                        + "    RETURNING 1) \n"
+                        + "SELECT count(*) FROM moved";
+        // @formatter:on
+
+        int total = 0;
+        long moved;
+        do {
+            moved =
+                    queryWithTransaction(
+                            MOVE_DELAYED_MESSAGES,
+                            q ->
+                                    q.addParameter(delayBucketSeconds)
+                                            .addParameter(DELAYED_MOVE_BATCH_SIZE)
+                                            .executeCount());
+            total += moved;
+        } while (moved == DELAYED_MOVE_BATCH_SIZE);
+
+        if (total > 0) {
+            logger.debug("Moved {} due delayed messages to their queues", total);
+        }
+        return total;
+    }
+
+    private boolean hasDelayedMessages() {
+        final String HAS_DELAYED_MESSAGES = "SELECT EXISTS(SELECT 1 FROM queue_message_delayed)";
+        return queryWithTransaction(HAS_DELAYED_MESSAGES, Query::exists);
+    }
+
+    private boolean isDelayed(long offsetTimeInSecond) {
+        return delayThresholdSeconds > 0 && offsetTimeInSecond >= delayThresholdSeconds;
+    }
+
+    /** Upserts the message in the timer table, in the bucket of its delivery time. */
+    private void pushDelayedMessage(
+            Connection connection,
+            String queueName,
+            String messageId,
+            String payload,
+            Integer priority,
+            long offsetTimeInSecond) {
+        // @formatter:off
+        final String PUSH_DELAYED_MESSAGE =
+                "INSERT INTO queue_message_delayed (bucket, deliver_on, queue_name, message_id, priority, offset_time_seconds, payload) \n"
+                        + "SELECT TIMESTAMP 'epoch' + floor(extract(epoch FROM d.deliver_on) / ?) * ? * INTERVAL '1 second', d.deliver_on, ?, ?, ?, ?, ? \n"
+                        + "FROM (SELECT (current_timestamp + (? ||' seconds')::interval)::timestamp AS deliver_on) d \n"
+                        + "ON CONFLICT (queue_name, message_id) DO UPDATE SET bucket = excluded.bucket, deliver_on = excluded.deliver_on, payload = excluded.payload";
+        // @formatter:on
+
+        execute(
+                connection,
+                PUSH_DELAYED_MESSAGE,
                 q ->
-                        q.addParameter(offsetTimeInSecond)
-                                        .addParameter(offsetTimeInSecond)
-                                        .addParameter(queueName)
+                        q.addParameter(delayBucketSeconds)
+                                .addParameter(delayBucketSeconds)
+                                .addParameter(queueName)
+                                .addParameter(messageId)
+                                .addParameter(priority)
+                                .addParameter(offsetTimeInSecond)
+                                .addParameter(payload)
+                                .addParameter(offsetTimeInSecond)
+                                .executeUpdate());
+    }
+
+    /**
+     * Moves a single message out of the timer table ahead of its bucket, to be delivered after the
+     * given offset.
+     *
+     * @return true if the message was in the timer table
+     */
+    private boolean promoteDelayedMessage(
+            Connection connection, String queueName, String messageId, long offsetTimeInSecond) {
+        if (!delayedMessages) {
+            return false;
+        }
+        // @formatter:off
+        final String PROMOTE_DELAYED_MESSAGE =
+                "WITH delayed AS ( \n"
+                        + "    DELETE FROM queue_message_delayed WHERE queue_name = ? AND message_id = ? \n"
+                        + "    RETURNING created_on, queue_name, message_id, priority, payload) \n"
+                        + "INSERT INTO queue_message (created_on, deliver_on, queue_name, message_id, priority, offset_time_seconds, payload) \n"
+                        + "SELECT created_on, (current_timestamp + (? ||' seconds')::interval), queue_name, message_id, priority, ?, payload FROM delayed \n"
+                        + "ON CONFLICT (queue_name, message_id) DO UPDATE SET payload = excluded.payload, deliver_on = excluded.deliver_on";
+        // @formatter:on
+
+        return query(
+                        connection,
+                        PROMOTE_DELAYED_MESSAGE,
+                        q ->
+                                q.addParameter(queueName)
                                         .addParameter(messageId)
-                                        .executeUpdate()
-                                == 1);
+                                        .addParameter(offsetTimeInSecond)
+                                        .addParameter(offsetTimeInSecond)
+                                        .executeUpdate())
+                == 1;
     }
 
     private boolean existsMessage(Connection connection, String queueName, String messageId) {
         final String EXISTS_MESSAGE =
                 "SELECT EXISTS(SELECT 1 FROM queue_message WHERE queue_name = ? AND message_id = ?) FOR SHARE";
+        final String EXISTS_DELAYED_MESSAGE =
+                "SELECT EXISTS(SELECT 1 FROM queue_message_delayed WHERE queue_name = ? AND message_id = ?) FOR SHARE";
         return query(
-                connection,
-                EXISTS_MESSAGE,
-                q -> q.addParameter(queueName).addParameter(messageId).exists());
+                        connection,
+                        EXISTS_MESSAGE,
+                        q -> q.addParameter(queueName).addParameter(messageId).exists())
+                || (delayedMessages
+                        && query(
+                                connection,
+                                EXISTS_DELAYED_MESSAGE,
+                                q -> q.addParameter(queueName).addParameter(messageId).exists()));
     }
 
     private void pushMessage(
@@ -354,8 +602,6 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
             Integer priority,
             long offsetTimeInSecond) {
 
-        createQueueIfNotExists(connection, queueName);
-
         String UPDATE_MESSAGE =
                 "UPDATE queue_message SET payload=?, deliver_on=(current_timestamp + (? ||' seconds')::interval) WHERE queue_name = ? AND message_id = ?";
         int rowsUpdated =
@@ -370,6 +616,16 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                                         .executeUpdate());
 
         if (rowsUpdated == 0) {
+            // a message already in queue_message, possibly being processed, is updated in place
+            if (isDelayed(offsetTimeInSecond)) {
+                pushDelayedMessage(
+                        connection, queueName, messageId, payload, priority, offsetTimeInSecond);
+                return;
+            }
+            if (delayedMessages) {
+                removeDelayedMessages(connection, queueName, new String[] {messageId});
+            }
+
             String PUSH_MESSAGE =
                     "INSERT INTO queue_message (deliver_on, queue_name, message_id, priority, offset_time_seconds, payload) VALUES ((current_timestamp + (? ||' seconds')::interval), ?,?,?,?,?) ON CONFLICT (queue_name,message_id) DO UPDATE SET payload=excluded.payload, deliver_on=excluded.deliver_on";
             execute(
@@ -384,9 +640,94 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                                     .addParameter(payload)
                                     .executeUpdate());
         }
+
+        if (offsetTimeInSecond <= 0) {
+            notifyQueue(connection, queueName);
+        }
+    }
+
+    /**
+     * Wakes up the long polls waiting on the queue, the notification is only delivered once the
+     * pushing transaction commits.
+     */
+    private void notifyQueue(Connection connection, String queueName) {
+        if (queueListener == null) {
+            return;
+        }
+        final String NOTIFY_QUEUE = "SELECT pg_notify(?, ?)";
+        query(
+                connection,
+                NOTIFY_QUEUE,
+                q ->
+                        q.addParameter(PostgresQueueListener.CHANNEL)
+                                .addParameter(queueName)
+                                .executeScalar());
+    }
+
+    /**
+     * Upserts the whole batch with a single statement, with the same semantics as {@link
+     * #pushMessage} with no offset: new messages are inserted, existing ones get their payload
+     * replaced and become deliverable again.
+     */
+    private void pushMessages(Connection connection, String queueName, List<Message> messages) {
+        // a statement cannot upsert the same row twice, the last message pushed for an id wins
+        Map<String, Message> uniqueMessages = new LinkedHashMap<>();
+        messages.forEach(message -> uniqueMessages.put(message.getId(), message));
+
+        String[] messageIds = new String[uniqueMessages.size()];
+        Integer[] priorities = new Integer[uniqueMessages.size()];
+        String[] payloads = new String[uniqueMessages.size()];
+        int i = 0;
+        for (Message message : uniqueMessages.values()) {
+            messageIds[i] = message.getId();
+            priorities[i] = message.getPriority();
+            payloads[i] = message.getPayload();
+            i++;
+        }
+
+        if (delayedMessages) {
+            removeDelayedMessages(connection, queueName, messageIds);
+        }
+
+        // @formatter:off
+        final String PUSH_MESSAGES =
+                "INSERT INTO queue_message (deliver_on, queue_name, message_id, priority, offset_time_seconds, payload) \n"
+                        + "SELECT current_timestamp, ?, m.message_id, m.priority, 0, m.payload \n"
+                        + "FROM unnest(?::varchar[], ?::int[], ?::text[]) AS m(message_id, priority, payload) \n"
+                        + "ON CONFLICT (queue_name,message_id) DO UPDATE SET payload=excluded.payload, deliver_on=excluded.deliver_on";
+        // @formatter:on
+
+        execute(
+                connection,
+                PUSH_MESSAGES,
+                q ->
+                        q.addParameter(queueName)
+                                .addArrayParameter("varchar", messageIds)
+                                .addArrayParameter("int4", priorities)
+                                .addArrayParameter("text", payloads)
+                                .executeUpdate());
+
+        notifyQueue(connection, queueName);
+    }
+
+    private void removeDelayedMessages(
+            Connection connection, String queueName, String[] messageIds) {
+        final String REMOVE_DELAYED_MESSAGES =
+                "DELETE FROM queue_message_delayed WHERE queue_name = ? AND message_id = ANY(?)";
+        execute(
+                connection,
+                REMOVE_DELAYED_MESSAGES,
+                q ->
+                        q.addParameter(queueName)
+                                .addArrayParameter("varchar", messageIds)
+                                .executeDelete());
     }
 
     private boolean removeMessage(Connection connection, String queueName, String messageId) {
+        if (delayedMessages) {
+            return !removeMessages(connection, queueName, Collections.singletonList(messageId))
+                    .isEmpty();
+        }
         final String REMOVE_MESSAGE =
                 "DELETE FROM queue_message WHERE queue_name = ? AND message_id = ?";
         return query(
@@ -395,19 +736,71 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                 q -> q.addParameter(queueName).addParameter(messageId).executeDelete());
     }
 
-    private List<Message> peekMessages(Connection connection, String queueName, int count) {
+    private List<String> removeMessages(
+            Connection connection, String queueName, List<String> messageIds) {
+        final String REMOVE_MESSAGES =
+                "DELETE FROM queue_message WHERE queue_name = ? AND message_id = ANY(?) RETURNING message_id";
+        // @formatter:off
+        final String REMOVE_MESSAGES_AND_DELAYED =
+                "WITH delayed AS ( \n"
+                        + "    DELETE FROM queue_message_delayed WHERE queue_name = ? AND message_id = ANY(?) RETURNING message_id), \n"
+                        + "ready AS ( \n"
+                        + "    DELETE FROM queue_message WHERE queue_name = ? AND message_id = ANY(?) RETURNING message_id) \n"
+                        + "SELECT message_id FROM ready UNION ALL SELECT message_id FROM delayed";
+        // @formatter:on
+
+        if (delayedMessages) {
+            return query(
+                    connection,
+                    REMOVE_MESSAGES_AND_DELAYED,
+                    q ->
+                            q.addParameter(queueName)
+                                    .addParameter(messageIds)
+                                    .addParameter(queueName)
+                                    .addParameter(messageIds)
+                                    .executeScalarList(String.class));
+        }
+        return query(
+                connection,
+                REMOVE_MESSAGES,
+                q ->
+                        q.addParameter(queueName)
+                                .addParameter(messageIds)
+                                .executeScalarList(String.class));
+    }
+
+    private List<Message> popMessages(
+            Connection connection, String queueName, int count, int timeout) {
         if (count < 1) {
             return Collections.emptyList();
         }
 
-        final String PEEK_MESSAGES =
-                "SELECT message_id, priority, payload FROM queue_message WHERE queue_name = ? AND popped = false AND deliver_on <= (current_timestamp + (1000 ||' microseconds')::interval) ORDER BY priority DESC, deliver_on, created_on LIMIT ? FOR UPDATE SKIP LOCKED";
+        // Claim and return the whole batch in one statement: the sub-select locks the candidate
+        // rows (skipping the ones other pollers hold), the UPDATE leases them as popped and
+        // RETURNING hands them back, re-ordered since RETURNING does not preserve the order.
+        // Popped messages whose lease expired are visible again once they are due, as a message
+        // pushed again while popped keeps its lease but gets a new delivery time.
+        // @formatter:off
+        final String POP_MESSAGES =
+                "WITH popped AS ( \n"
+                        + "    UPDATE queue_message SET popped = true, unack_on = (current_timestamp + (? ||' seconds')::interval) \n"
+                        + "    WHERE queue_name = ? AND (queue_name, message_id) IN ( \n"
+                        + "        SELECT queue_name, message_id FROM queue_message \n"
+                        + "        WHERE queue_name = ? \n"
+                        + "        AND ((popped = false AND deliver_on <= (current_timestamp + (1000 ||' microseconds')::interval)) \n"
+                        + "            OR (popped = true AND unack_on < current_timestamp AND deliver_on <= current_timestamp)) \n"
+                        + "        ORDER BY priority DESC, deliver_on, created_on LIMIT ? FOR UPDATE SKIP LOCKED) \n"
+                        + "    RETURNING message_id, priority, payload, deliver_on, created_on) \n"
+                        + "SELECT message_id, priority, payload FROM popped ORDER BY priority DESC, deliver_on, created_on";
+        // @formatter:on
 
         return query(
                 connection,
-                PEEK_MESSAGES,
+                POP_MESSAGES,
                 p ->
-                        p.addParameter(queueName)
+                        p.addParameter(UNACK_TIMEOUT_SECONDS)
+                                .addParameter(queueName)
+                                .addParameter(queueName)
                                 .addParameter(count)
                                 .executeAndFetch(
                                         rs -> {
@@ -423,32 +816,29 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                                         }));
     }
 
-    private List<Message> popMessages(
-            Connection connection, String queueName, int count, int timeout) {
-        List<Message> messages = peekMessages(connection, queueName, count);
-
-        if (messages.isEmpty()) {
-            return messages;
-        }
-
-        List<Message> poppedMessages = new ArrayList<>();
-        for (Message message : messages) {
-            final String POP_MESSAGE =
-                    "UPDATE queue_message SET popped = true WHERE queue_name = ? AND message_id = ? AND popped = false";
-            int result =
-                    query(
-                            connection,
-                            POP_MESSAGE,
-                            q ->
-                                    q.addParameter(queueName)
-                                            .addParameter(message.getId())
-                                            .executeUpdate());
+    /** Reloads the registry of known queues from the queue table. */
+    @VisibleForTesting
+    void refreshQueues() {
+        final String GET_QUEUES = "SELECT queue_name FROM queue";
+        List<String> existingQueues =
+                queryWithTransaction(GET_QUEUES, q -> q.executeScalarList(String.class));
+        queues.retainAll(existingQueues);
+        queues.addAll(existingQueues);
+    }
 
-            if (result == 1) {
-                poppedMessages.add(message);
-            }
+    /**
+     * Registers the queue in its own transaction the first time this node pushes to it, so that
+     * pushes to known queues do not touch the queue table at all.
+     */
+    private void createQueueIfNotExists(String queueName) {
+        if (queues.contains(queueName)) {
+            return;
         }
-        return poppedMessages;
+        logger.trace("Creating new queue '{}'", queueName);
+        final String CREATE_QUEUE =
+                "INSERT INTO queue (queue_name) VALUES (?) ON CONFLICT (queue_name) DO NOTHING";
+        executeWithTransaction(CREATE_QUEUE, q -> q.addParameter(queueName).executeUpdate());
+        queues.add(queueName);
     }
 
     @Override
@@ -456,20 +846,23 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
         return getWithRetriedTransactions(tx -> existsMessage(tx, queueName, messageId));
     }
 
-    private void createQueueIfNotExists(Connection connection, String queueName) {
-        logger.trace("Creating new queue '{}'", queueName);
-        final String EXISTS_QUEUE =
-                "SELECT EXISTS(SELECT 1 FROM queue WHERE queue_name = ?) FOR SHARE";
-        boolean exists = query(connection, EXISTS_QUEUE, q -> q.addParameter(queueName).exists());
-        if (!exists) {
-            final String CREATE_QUEUE =
-                    "INSERT INTO queue (queue_name) VALUES (?) ON CONFLICT (queue_name) DO NOTHING";
-            execute(connection, CREATE_QUEUE, q -> q.addParameter(queueName).executeUpdate());
+    private static class QueueDepth {
+        private final long ready;
+        private final long unacked;
+
+        private QueueDepth(long ready, long unacked) {
+            this.ready = ready;
+            this.unacked = unacked;
         }
     }
 
-    private class QueueMessage {
-        public String queueName;
-        public String messageId;
+    private static class QueueDepthSnapshot {
+        private final Map<String, QueueDepth> depths;
+        private final long readAt;
+
+        private QueueDepthSnapshot(Map<String, QueueDepth> depths, long readAt) {
+            this.depths = depths;
+            this.readAt = readAt;
+        }
     }
 }
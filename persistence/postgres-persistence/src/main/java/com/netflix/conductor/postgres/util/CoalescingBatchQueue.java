@@ -0,0 +1,201 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.metrics.Monitors;
+
+/**
+ * Bounded queue of documents waiting to be stored in batches, in which a document replaces the
+ * pending one with the same id so that only its latest version is stored.
+ *
+ * <p>A document keeps the position of the one it replaced, and the callers of both are notified
+ * once it is stored. Without an id function, documents never replace each other. The documents of a
+ * batch that could not be stored are queued again, up to {@link #MAX_STORE_ATTEMPTS} times. The
+ * number of pending documents is recorded as the worker queue size metric of the queue, and the
+ * documents refused while it is full as overflow DAO requests.
+ */
+public class CoalescingBatchQueue<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingBatchQueue.class);
+
+    /** Number of times a document is tried to be stored before its callers are notified. */
+    static final int MAX_STORE_ATTEMPTS = 3;
+
+    private final String name;
+    private final int capacity;
+    private final int batchSize;
+    private final Function<T, String> idOf;
+    private final Consumer<List<T>> store;
+    private final Map<Object, Pending<T>> pending = new LinkedHashMap<>();
+
+    /**
+     * @param name the name of the queue in metrics
+     * @param capacity the maximum number of pending documents
+     * @param batchSize the maximum number of documents stored at once
+     * @param idOf the id of a document, null when documents are not coalesced
+     * @param store stores a batch of documents, with distinct ids when coalesced
+     */
+    public CoalescingBatchQueue(
+            String name,
+            int capacity,
+            int batchSize,
+            Function<T, String> idOf,
+            Consumer<List<T>> store) {
+        this.name = name;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.idOf = idOf;
+        this.store = store;
+    }
+
+    /**
+     * @return completes once the document or a later version of it is stored, null when the queue
+     *     is full and the caller has to store the document itself
+     */
+    public CompletableFuture<Void> offer(T document) {
+        Object id = idOf != null ? idOf.apply(document) : new Object();
+        CompletableFuture<Void> stored;
+        int size;
+        synchronized (pending) {
+            Pending<T> replaced = pending.get(id);
+            if (replaced != null) {
+                replaced.document = document;
+                replaced.attempts = 0;
+                return replaced.stored;
+            }
+            if (pending.size() >= capacity) {
+                // nothing is discarded, the caller stores the document itself
+                Monitors.recordDaoRequests(name, "overflow", "", "");
+                return null;
+            }
+            stored = new CompletableFuture<>();
+            pending.put(id, new Pending<>(id, document, stored));
+            size = pending.size();
+        }
+        Monitors.recordWorkerQueueSize(name, size);
+        return stored;
+    }
+
+    /**
+     * Stores the next batch of pending documents. The documents of a batch that could not be
+     * stored are queued again, unless a newer version of them is already pending or they were
+     * tried too many times, in which case their callers are notified of the failure.
+     *
+     * @return true when documents are still pending and the batch was stored
+     */
+    public boolean flushBatch() {
+        List<Pending<T>> batch = new ArrayList<>(batchSize);
+        int size;
+        synchronized (pending) {
+            Iterator<Pending<T>> iterator = pending.values().iterator();
+            while (batch.size() < batchSize && iterator.hasNext()) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            size = pending.size();
+        }
+        Monitors.recordWorkerQueueSize(name, size);
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        try {
+            store.accept(batch.stream().map(p -> p.document).collect(Collectors.toList()));
+            batch.forEach(p -> p.stored.complete(null));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to store a batch of {} documents of {}", batch.size(), name, e);
+            requeue(batch, e);
+            // leave the store some time before trying again
+            return false;
+        }
+        return size > 0;
+    }
+
+    /**
+     * Stores all the pending documents, trying failed batches again right away. The callers of the
+     * documents that could not be stored in {@link #MAX_STORE_ATTEMPTS} attempts are notified of
+     * the failure, so that none is left waiting.
+     */
+    public void drain() {
+        while (size() > 0) {
+            flushBatch();
+        }
+    }
+
+    private void requeue(List<Pending<T>> batch, Exception failure) {
+        List<Pending<T>> failed = new ArrayList<>();
+        int size;
+        synchronized (pending) {
+            for (Pending<T> p : batch) {
+                Pending<T> newer = pending.get(p.id);
+                if (newer != null) {
+                    // the newer version stores the document of these callers as well
+                    newer.stored.whenComplete(
+                            (v, t) -> {
+                                if (t != null) {
+                                    p.stored.completeExceptionally(t);
+                                } else {
+                                    p.stored.complete(null);
+                                }
+                            });
+                } else if (++p.attempts < MAX_STORE_ATTEMPTS) {
+                    pending.put(p.id, p);
+                } else {
+                    failed.add(p);
+                }
+            }
+            size = pending.size();
+        }
+        Monitors.recordWorkerQueueSize(name, size);
+        if (!failed.isEmpty()) {
+            LOGGER.error(
+                    "Gave up storing {} documents of {} after {} attempts",
+                    failed.size(),
+                    name,
+                    MAX_STORE_ATTEMPTS,
+                    failure);
+            failed.forEach(p -> p.stored.completeExceptionally(failure));
+        }
+    }
+
+    public int size() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private static class Pending<T> {
+        private final Object id;
+        private T document;
+        private final CompletableFuture<Void> stored;
+        private int attempts;
+
+        private Pending(Object id, T document, CompletableFuture<Void> stored) {
+            this.id = id;
+            this.document = document;
+            this.stored = stored;
+        }
+    }
+}
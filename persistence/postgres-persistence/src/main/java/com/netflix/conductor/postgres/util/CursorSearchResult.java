@@ -0,0 +1,38 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.util;
+
+import java.util.List;
+
+import com.netflix.conductor.common.run.SearchResult;
+
+/** A page of search results with the opaque cursor to pass to get the next page. */
+public class CursorSearchResult<T> extends SearchResult<T> {
+
+    private String nextCursor;
+
+    public CursorSearchResult() {}
+
+    public CursorSearchResult(long totalHits, List<T> results, String nextCursor) {
+        super(totalHits, results);
+        this.nextCursor = nextCursor;
+    }
+
+    /** @return the cursor of the next page, null when this page is the last one */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -11,6 +11,7 @@
  */
 package com.netflix.conductor.postgres.util;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.ZoneOffset;
@@ -32,6 +33,12 @@ public class PostgresIndexQueryBuilder {
     private final List<String> sort;
     private final List<Condition> conditions = new ArrayList<>();
 
+    /** The unique column ending the sort of keyset pages, null when paging with an offset. */
+    private final String idColumn;
+
+    /** The sort key values of the last row of the previous keyset page, null for the first. */
+    private final List<String> cursorValues;
+
     private static final String[] VALID_FIELDS = {
         "workflow_id",
         "correlation_id",
@@ -43,11 +50,26 @@ public class PostgresIndexQueryBuilder {
         "task_def_name",
         "update_time",
         "json_data",
-        "to_tsvector(json_data::text)"
+        "json_data_tsv"
     };
 
     private static final String[] VALID_SORT_ORDER = {"ASC", "DESC"};
 
+    /** The sortable fields that can't be null, the only ones keyset pages can seek on. */
+    private static final String[] KEYSET_FIELDS = {
+        "workflow_id",
+        "workflow_type",
+        "start_time",
+        "status",
+        "task_id",
+        "task_type",
+        "task_def_name"
+    };
+
+    /** The sortable fields that can't be null in some tables only, by table. */
+    private static final Map<String, List<String>> TABLE_KEYSET_FIELDS =
+            Map.of("task_index", List.of("update_time"));
+
     private static class Condition {
         private String attribute;
         private String operator;
@@ -75,7 +97,7 @@ public class PostgresIndexQueryBuilder {
             if (operator.equals("IN")) {
                 return attribute + " = ANY(?)";
             } else if (operator.equals("@@")) {
-                return attribute + " @@ to_tsquery(?)";
+                return attribute + " @@ to_tsquery('english', ?)";
             } else if (operator.equals("@>")) {
                 return attribute + " @> ?::JSONB";
             } else {
@@ -133,36 +155,221 @@ public class PostgresIndexQueryBuilder {
         this.start = start;
         this.count = count;
         this.sort = sort;
+        this.idColumn = null;
+        this.cursorValues = null;
+        this.parseQuery(query);
+        this.parseFreeText(freeText);
+    }
+
+    /**
+     * Builds the query of a keyset page, which seeks past the sort key values of the last row of
+     * the previous page instead of skipping the rows of all the previous pages. Rows are sorted by
+     * the given sort, then by the unique id column.
+     *
+     * <p>The query selects the sort key values of each row as text after its json data, one more
+     * row than requested is fetched to tell whether there is a next page.
+     *
+     * @param cursor the cursor of the last row of the previous page, null for the first page
+     * @throws IllegalArgumentException when sorting by a nullable field or given an invalid cursor
+     */
+    public PostgresIndexQueryBuilder(
+            String table,
+            String idColumn,
+            String query,
+            String freeText,
+            String cursor,
+            int count,
+            List<String> sort) {
+        this.table = table;
+        this.freeText = freeText;
+        this.start = 0;
+        this.count = count;
+        this.sort = sort;
+        this.idColumn = idColumn;
         this.parseQuery(query);
         this.parseFreeText(freeText);
+        this.cursorValues = cursor == null ? null : decodeCursor(cursor);
+        if (cursorValues != null && cursorValues.size() != getKeysetSort().size()) {
+            throw new IllegalArgumentException("The cursor does not match the sort: " + cursor);
+        }
     }
 
     public String getQuery() {
-        String queryString = "";
-        List<Condition> validConditions =
-                conditions.stream().filter(c -> c.isValid()).collect(Collectors.toList());
-        if (validConditions.size() > 0) {
-            queryString =
-                    " WHERE "
-                            + String.join(
-                                    " AND ",
-                                    validConditions.stream()
-                                            .map(c -> c.getQueryFragment())
-                                            .collect(Collectors.toList()));
-        }
-        return "SELECT json_data::TEXT FROM "
+        List<String> fragments = getConditionFragments();
+        if (idColumn == null) {
+            return "SELECT json_data::TEXT FROM "
+                    + table
+                    + getWhere(fragments)
+                    + getSort()
+                    + " LIMIT ? OFFSET ?";
+        }
+
+        List<String[]> keysetSort = getKeysetSort();
+        if (cursorValues != null) {
+            fragments.add(getKeysetFragment(keysetSort));
+        }
+        StringBuilder select = new StringBuilder("SELECT json_data::TEXT");
+        for (String[] key : keysetSort) {
+            select.append(", ").append(key[0]).append("::TEXT");
+        }
+        return select
+                + " FROM "
                 + table
-                + queryString
-                + getSort()
-                + " LIMIT ? OFFSET ?";
+                + getWhere(fragments)
+                + " ORDER BY "
+                + keysetSort.stream()
+                        .map(key -> key[0] + " " + key[1])
+                        .collect(Collectors.joining(", "))
+                + " LIMIT ?";
     }
 
     public void addParameters(Query q) throws SQLException {
+        addConditionParameters(q);
+        if (idColumn == null) {
+            q.addParameter(count);
+            q.addParameter(start);
+            return;
+        }
+
+        if (cursorValues != null) {
+            List<String[]> keysetSort = getKeysetSort();
+            if (isSingleDirection(keysetSort)) {
+                cursorValues.forEach(q::addParameter);
+            } else {
+                // each key is compared for equality by the terms of the keys after it
+                for (int i = 0; i < keysetSort.size(); i++) {
+                    for (int j = 0; j <= i; j++) {
+                        q.addParameter(cursorValues.get(j));
+                    }
+                }
+            }
+        }
+        q.addParameter(count + 1);
+    }
+
+    /** @return the query counting all the rows matching the conditions, across pages */
+    public String getCountQuery() {
+        return "SELECT COUNT(*) FROM " + table + getWhere(getConditionFragments());
+    }
+
+    /**
+     * @return the query explaining the count query as JSON, the planner's estimate of the rows
+     *     matching the conditions being its top level plan rows
+     */
+    public String getCountEstimateQuery() {
+        return "EXPLAIN (FORMAT JSON) SELECT 1 FROM " + table + getWhere(getConditionFragments());
+    }
+
+    /** Adds the parameters of the count and count estimate queries. */
+    public void addConditionParameters(Query q) throws SQLException {
         for (Condition condition : conditions) {
             condition.addParameter(q);
         }
-        q.addParameter(count);
-        q.addParameter(start);
+    }
+
+    /** @return the cursor of a row given the sort key values selected after its json data */
+    public String getCursor(List<String> sortKeyValues) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return sortKeyValues.stream()
+                .map(value -> encoder.encodeToString(value.getBytes(StandardCharsets.UTF_8)))
+                .collect(Collectors.joining("."));
+    }
+
+    /** @return true when building a keyset page following another one */
+    public boolean hasCursor() {
+        return cursorValues != null;
+    }
+
+    /** @return the number of sort key values selected after the json data of a keyset page row */
+    public int getSortKeyCount() {
+        return getKeysetSort().size();
+    }
+
+    private static List<String> decodeCursor(String cursor) {
+        List<String> values = new ArrayList<>();
+        try {
+            for (String value : cursor.split("\\.", -1)) {
+                byte[] decoded = Base64.getUrlDecoder().decode(value);
+                values.add(new String(decoded, StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        return values;
+    }
+
+    private List<String> getConditionFragments() {
+        return conditions.stream()
+                .filter(c -> c.isValid())
+                .map(c -> c.getQueryFragment())
+                .collect(Collectors.toList());
+    }
+
+    private String getWhere(List<String> fragments) {
+        if (fragments.isEmpty()) {
+            return "";
+        }
+        return " WHERE " + String.join(" AND ", fragments);
+    }
+
+    /** @return the attribute and order of the keys sorting keyset pages, ending with the id */
+    private List<String[]> getKeysetSort() {
+        List<String[]> keys = new ArrayList<>();
+        for (String[] key : getSortKeys()) {
+            if (!Arrays.asList(KEYSET_FIELDS).contains(key[0])
+                    && !TABLE_KEYSET_FIELDS.getOrDefault(table, List.of()).contains(key[0])) {
+                throw new IllegalArgumentException(
+                        "Cannot page with a cursor through results sorted by " + key[0]);
+            }
+            keys.add(key);
+            if (key[0].equals(idColumn)) {
+                return keys;
+            }
+        }
+        String order = keys.isEmpty() ? "ASC" : keys.get(keys.size() - 1)[1];
+        keys.add(new String[] {idColumn, order});
+        return keys;
+    }
+
+    /**
+     * Seeks past the cursor with a single row comparison when all the keys are sorted in the same
+     * direction, so that an index on the keys can start right at the cursor. Otherwise each key is
+     * compared in its own direction while the keys before it are equal to the cursor.
+     */
+    private String getKeysetFragment(List<String[]> keysetSort) {
+        if (isSingleDirection(keysetSort)) {
+            String operator = keysetSort.get(0)[1].equals("ASC") ? " > " : " < ";
+            return "("
+                    + keysetSort.stream().map(key -> key[0]).collect(Collectors.joining(", "))
+                    + ")"
+                    + operator
+                    + "("
+                    + keysetSort.stream()
+                            .map(key -> getPlaceholder(key[0]))
+                            .collect(Collectors.joining(", "))
+                    + ")";
+        }
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < keysetSort.size(); i++) {
+            List<String> comparisons = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                String attribute = keysetSort.get(j)[0];
+                comparisons.add(attribute + " = " + getPlaceholder(attribute));
+            }
+            String[] key = keysetSort.get(i);
+            String operator = key[1].equals("ASC") ? " > " : " < ";
+            comparisons.add(key[0] + operator + getPlaceholder(key[0]));
+            terms.add("(" + String.join(" AND ", comparisons) + ")");
+        }
+        return "(" + String.join(" OR ", terms) + ")";
+    }
+
+    private static boolean isSingleDirection(List<String[]> keysetSort) {
+        return keysetSort.stream().map(key -> key[1]).distinct().count() == 1;
+    }
+
+    private static String getPlaceholder(String attribute) {
+        return attribute.endsWith("_time") ? "?::TIMESTAMPTZ" : "?";
     }
 
     private void parseQuery(String query) {
@@ -185,7 +392,7 @@ public class PostgresIndexQueryBuilder {
                 conditions.add(cond);
             } else {
                 Condition cond = new Condition();
-                cond.setAttribute("to_tsvector(json_data::text)");
+                cond.setAttribute("json_data_tsv");
                 cond.setOperator("@@");
                 String[] values = {freeText};
                 cond.setValues(Arrays.asList(values));
@@ -195,7 +402,23 @@ public class PostgresIndexQueryBuilder {
     }
 
     private String getSort() {
-        ArrayList<String> sortConds = new ArrayList<>();
+        List<String> sortConds =
+                getSortKeys().stream()
+                        .map(key -> key[0] + " " + key[1])
+                        .collect(Collectors.toList());
+
+        if (sortConds.size() > 0) {
+            return " ORDER BY " + String.join(", ", sortConds);
+        }
+        return "";
+    }
+
+    /** @return the attribute and order of the valid sort conditions */
+    private List<String[]> getSortKeys() {
+        List<String[]> sortKeys = new ArrayList<>();
+        if (sort == null) {
+            return sortKeys;
+        }
         for (String s : sort) {
             String[] splitCond = s.split(":");
             if (splitCond.length == 2) {
@@ -203,15 +426,11 @@ public class PostgresIndexQueryBuilder {
                 String order = splitCond[1].toUpperCase();
                 if (Arrays.asList(VALID_FIELDS).contains(attribute)
                         && Arrays.asList(VALID_SORT_ORDER).contains(order)) {
-                    sortConds.add(attribute + " " + order);
+                    sortKeys.add(new String[] {attribute, order});
                 }
             }
         }
-
-        if (sortConds.size() > 0) {
-            return " ORDER BY " + String.join(", ", sortConds);
-        }
-        return "";
+        return sortKeys;
     }
 
     private static String camelToSnake(String camel) {
@@ -0,0 +1,159 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Holds one dedicated connection per node that {@code LISTEN}s for queue push notifications and
+ * wakes up the pollers waiting on the notified queue.
+ *
+ * <p>All queues share a single channel and the queue name travels as the notification payload:
+ * Postgres channel names are identifiers limited to 63 bytes, which queue names can exceed.
+ */
+public class PostgresQueueListener {
+
+    public static final String CHANNEL = "conductor_queue_message";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresQueueListener.class);
+    private static final int NOTIFICATION_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final DataSource dataSource;
+    private final Map<String, QueueSignal> signals = new ConcurrentHashMap<>();
+
+    private final Thread thread;
+
+    private volatile boolean listening = false;
+    private volatile boolean running = true;
+
+    public PostgresQueueListener(DataSource dataSource) {
+        this.dataSource = dataSource;
+
+        this.thread = new Thread(this::listen, "postgres-queue-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** @return true when notifications are being received and can be relied upon to wake up */
+    public boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * @return the current notification generation of the queue, to be passed to {@link
+     *     #await(String, long, long)} after an empty poll so that a push in between is not missed
+     */
+    public long getGeneration(String queueName) {
+        QueueSignal signal = signal(queueName);
+        synchronized (signal) {
+            return signal.generation;
+        }
+    }
+
+    /**
+     * Blocks until a push to the queue is notified after {@code generation} was read, or until the
+     * timeout elapses.
+     */
+    public void await(String queueName, long generation, long timeoutMs) {
+        QueueSignal signal = signal(queueName);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (signal) {
+            long remaining = timeoutMs;
+            while (signal.generation == generation && remaining > 0) {
+                try {
+                    signal.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Stops listening and waits for the listener to hand its connection back to the pool. Waiting
+     * pollers are woken up and fall back to polling.
+     */
+    public void close() {
+        running = false;
+        try {
+            thread.join(NOTIFICATION_TIMEOUT_MS * 2L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private QueueSignal signal(String queueName) {
+        return signals.computeIfAbsent(queueName, name -> new QueueSignal());
+    }
+
+    private void notify(String queueName) {
+        QueueSignal signal = signal(queueName);
+        synchronized (signal) {
+            signal.generation++;
+            signal.notifyAll();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                listening = true;
+                LOGGER.debug("Listening for queue notifications on channel {}", CHANNEL);
+
+                while (running) {
+                    PGNotification[] notifications =
+                            pgConnection.getNotifications(NOTIFICATION_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            notify(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.warn("Queue notification listener failed, reconnecting", e);
+            } finally {
+                // pollers must not sleep on notifications that can no longer arrive
+                listening = false;
+                signals.keySet().forEach(this::notify);
+            }
+            if (running) {
+                Uninterruptibles.sleepUninterruptibly(RECONNECT_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static class QueueSignal {
+        private long generation;
+    }
+}
@@ -94,6 +94,32 @@ public class Query implements AutoCloseable {
         return addParameterInternal((ps, idx) -> ps.setArray(idx, valueArray));
     }
 
+    /**
+     * Bind the values as a single SQL array parameter, typically unnested or compared with {@code =
+     * ANY(?)} to work on many rows in one statement.
+     *
+     * @param typeName The SQL name of the array element type, e.g. {@code varchar} or {@code int4}.
+     * @param values The array elements.
+     * @return {@literal this}
+     */
+    public Query addArrayParameter(final String typeName, final Object[] values)
+            throws SQLException {
+        Array valueArray = this.connection.createArrayOf(typeName, values);
+        return addParameterInternal((ps, idx) -> ps.setArray(idx, valueArray));
+    }
+
+    /**
+     * Fetch the results through a cursor, {@literal fetchSize} rows at a time, instead of reading
+     * them all at once. Only effective when the connection is not in auto-commit mode.
+     *
+     * @param fetchSize The number of rows to fetch per round trip.
+     * @return {@literal this}
+     */
+    public Query setFetchSize(final int fetchSize) throws SQLException {
+        statement.setFetchSize(fetchSize);
+        return this;
+    }
+
     public Query addParameter(final int value) {
         return addParameterInternal((ps, idx) -> ps.setInt(idx, value));
     }
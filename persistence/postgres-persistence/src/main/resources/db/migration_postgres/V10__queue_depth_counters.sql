@@ -0,0 +1,55 @@
+-- Queue depth counters maintained by a trigger on queue_message, so that queue size queries do not
+-- have to count the messages. Each backend updates its own shard of the counters of a queue to
+-- avoid serializing all pushes and pops of the queue on a single row.
+CREATE TABLE queue_depth (
+  queue_name VARCHAR(255) NOT NULL,
+  shard INTEGER NOT NULL,
+  ready BIGINT NOT NULL DEFAULT 0,
+  unacked BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (queue_name, shard)
+);
+
+INSERT INTO queue_depth (queue_name, shard, ready, unacked)
+SELECT queue_name, 0, count(*) FILTER (WHERE popped IS NOT TRUE), count(*) FILTER (WHERE popped IS TRUE)
+FROM queue_message
+GROUP BY queue_name;
+
+CREATE OR REPLACE FUNCTION queue_depth_update() RETURNS TRIGGER AS $$
+DECLARE
+  depth_queue_name VARCHAR(255);
+  ready_delta BIGINT := 0;
+  unacked_delta BIGINT := 0;
+BEGIN
+  IF TG_OP <> 'INSERT' THEN
+    depth_queue_name := OLD.queue_name;
+    IF OLD.popped THEN
+      unacked_delta := unacked_delta - 1;
+    ELSE
+      ready_delta := ready_delta - 1;
+    END IF;
+  END IF;
+  IF TG_OP <> 'DELETE' THEN
+    depth_queue_name := NEW.queue_name;
+    IF NEW.popped THEN
+      unacked_delta := unacked_delta + 1;
+    ELSE
+      ready_delta := ready_delta + 1;
+    END IF;
+  END IF;
+
+  INSERT INTO queue_depth AS d (queue_name, shard, ready, unacked)
+  VALUES (depth_queue_name, pg_backend_pid() % 16, ready_delta, unacked_delta)
+  ON CONFLICT (queue_name, shard) DO UPDATE
+  SET ready = d.ready + excluded.ready, unacked = d.unacked + excluded.unacked;
+
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER queue_depth_insert_delete
+  AFTER INSERT OR DELETE ON queue_message
+  FOR EACH ROW EXECUTE PROCEDURE queue_depth_update();
+
+CREATE TRIGGER queue_depth_pop
+  AFTER UPDATE OF popped ON queue_message
+  FOR EACH ROW WHEN (OLD.popped IS DISTINCT FROM NEW.popped) EXECUTE PROCEDURE queue_depth_update();
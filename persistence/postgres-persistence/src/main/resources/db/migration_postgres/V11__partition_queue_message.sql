@@ -0,0 +1,44 @@
+-- Hash partition queue_message by queue_name, so that each queue's messages, indexes and vacuum
+-- are confined to one partition. The number of partitions is set by the
+-- conductor.postgres.queueMessagePartitions property when this migration runs.
+ALTER TABLE queue_message RENAME TO queue_message_unpartitioned;
+
+CREATE TABLE queue_message (
+  created_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  deliver_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  queue_name varchar(255) NOT NULL,
+  message_id varchar(255) NOT NULL,
+  priority integer DEFAULT 0,
+  popped boolean DEFAULT false,
+  offset_time_seconds BIGINT,
+  payload TEXT,
+  unack_on TIMESTAMP
+) PARTITION BY HASH (queue_name);
+
+DO $$
+BEGIN
+  FOR i IN 0..${queueMessagePartitions} - 1 LOOP
+    EXECUTE format(
+      'CREATE TABLE queue_message_p%s PARTITION OF queue_message FOR VALUES WITH (MODULUS %s, REMAINDER %s)',
+      i, ${queueMessagePartitions}, i);
+  END LOOP;
+END $$;
+
+-- the queue depth counters already account for the copied messages, the triggers are created afterwards
+INSERT INTO queue_message (created_on, deliver_on, queue_name, message_id, priority, popped, offset_time_seconds, payload, unack_on)
+SELECT created_on, deliver_on, queue_name, message_id, priority, popped, offset_time_seconds, payload, unack_on
+FROM queue_message_unpartitioned;
+
+DROP TABLE queue_message_unpartitioned;
+
+ALTER TABLE queue_message ADD PRIMARY KEY (queue_name, message_id);
+CREATE INDEX combo_queue_message ON queue_message USING btree (queue_name , priority desc, popped, deliver_on, created_on);
+CREATE INDEX queue_message_unack_on ON queue_message (queue_name, unack_on) WHERE popped = true;
+
+CREATE TRIGGER queue_depth_insert_delete
+  AFTER INSERT OR DELETE ON queue_message
+  FOR EACH ROW EXECUTE PROCEDURE queue_depth_update();
+
+CREATE TRIGGER queue_depth_pop
+  AFTER UPDATE OF popped ON queue_message
+  FOR EACH ROW WHEN (OLD.popped IS DISTINCT FROM NEW.popped) EXECUTE PROCEDURE queue_depth_update();
@@ -0,0 +1,43 @@
+-- Timer table holding the messages pushed with a long delay, grouped in coarse buckets of their
+-- delivery time. Buckets are moved to queue_message shortly before they are due, so that
+-- queue_message and its indexes only hold the messages that polls may pick up soon.
+CREATE TABLE queue_message_delayed (
+  bucket TIMESTAMP NOT NULL,
+  created_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  deliver_on TIMESTAMP NOT NULL,
+  queue_name varchar(255) NOT NULL,
+  message_id varchar(255) NOT NULL,
+  priority integer DEFAULT 0,
+  offset_time_seconds BIGINT,
+  payload TEXT,
+  PRIMARY KEY (queue_name, message_id)
+);
+
+CREATE INDEX queue_message_delayed_bucket ON queue_message_delayed (bucket);
+
+-- delayed messages count as ready messages of their queue, as they did in queue_message
+CREATE OR REPLACE FUNCTION queue_depth_delayed_update() RETURNS TRIGGER AS $$
+DECLARE
+  depth_queue_name VARCHAR(255);
+  ready_delta BIGINT;
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    depth_queue_name := NEW.queue_name;
+    ready_delta := 1;
+  ELSE
+    depth_queue_name := OLD.queue_name;
+    ready_delta := -1;
+  END IF;
+
+  INSERT INTO queue_depth AS d (queue_name, shard, ready, unacked)
+  VALUES (depth_queue_name, pg_backend_pid() % 16, ready_delta, 0)
+  ON CONFLICT (queue_name, shard) DO UPDATE
+  SET ready = d.ready + excluded.ready;
+
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER queue_depth_delayed_insert_delete
+  AFTER INSERT OR DELETE ON queue_message_delayed
+  FOR EACH ROW EXECUTE PROCEDURE queue_depth_delayed_update();
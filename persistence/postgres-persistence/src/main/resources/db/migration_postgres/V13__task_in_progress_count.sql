@@ -0,0 +1,51 @@
+-- Number of tasks in progress per task definition, kept in step with the in_progress_status of
+-- task_in_progress by triggers, so that concurrency limits read and lock a single row instead of
+-- counting the in-progress tasks of a type.
+CREATE TABLE task_in_progress_count (
+  task_def_name varchar(255) NOT NULL,
+  in_progress BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (task_def_name)
+);
+
+INSERT INTO task_in_progress_count (task_def_name, in_progress)
+SELECT task_def_name, COUNT(*) FROM task_in_progress WHERE in_progress_status GROUP BY task_def_name;
+
+CREATE OR REPLACE FUNCTION task_in_progress_count_update() RETURNS TRIGGER AS $$
+DECLARE
+  count_task_def_name VARCHAR(255);
+  in_progress_delta BIGINT;
+BEGIN
+  IF TG_OP = 'DELETE' THEN
+    count_task_def_name := OLD.task_def_name;
+    in_progress_delta := -1;
+  ELSIF TG_OP = 'INSERT' OR NEW.in_progress_status THEN
+    count_task_def_name := NEW.task_def_name;
+    in_progress_delta := 1;
+  ELSE
+    count_task_def_name := NEW.task_def_name;
+    in_progress_delta := -1;
+  END IF;
+
+  INSERT INTO task_in_progress_count AS c (task_def_name, in_progress)
+  VALUES (count_task_def_name, in_progress_delta)
+  ON CONFLICT (task_def_name) DO UPDATE
+  SET in_progress = c.in_progress + excluded.in_progress;
+
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER task_in_progress_count_insert
+  AFTER INSERT ON task_in_progress
+  FOR EACH ROW WHEN (NEW.in_progress_status)
+  EXECUTE PROCEDURE task_in_progress_count_update();
+
+CREATE TRIGGER task_in_progress_count_delete
+  AFTER DELETE ON task_in_progress
+  FOR EACH ROW WHEN (OLD.in_progress_status)
+  EXECUTE PROCEDURE task_in_progress_count_update();
+
+CREATE TRIGGER task_in_progress_count_update
+  AFTER UPDATE OF in_progress_status ON task_in_progress
+  FOR EACH ROW WHEN (OLD.in_progress_status IS DISTINCT FROM NEW.in_progress_status)
+  EXECUTE PROCEDURE task_in_progress_count_update();
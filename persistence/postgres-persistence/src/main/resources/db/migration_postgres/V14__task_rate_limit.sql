@@ -0,0 +1,11 @@
+-- Rate limit counters, one row per task definition holding the number of tasks admitted in the
+-- current and in the previous fixed window of its rate limit frequency. The count of the sliding
+-- window ending now is estimated from both, weighting the previous window by its overlap.
+CREATE TABLE task_rate_limit (
+  task_def_name varchar(255) NOT NULL,
+  window_start BIGINT NOT NULL,
+  window_count INTEGER NOT NULL DEFAULT 0,
+  previous_count INTEGER NOT NULL DEFAULT 0,
+  granted INTEGER NOT NULL DEFAULT 0,
+  PRIMARY KEY (task_def_name)
+);
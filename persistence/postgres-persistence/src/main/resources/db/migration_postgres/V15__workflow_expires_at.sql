@@ -0,0 +1,5 @@
+-- Time after which a workflow is removed along with its tasks by the expiry reaper, only set for
+-- the workflows removed with an expiry.
+ALTER TABLE workflow ADD COLUMN expires_at TIMESTAMP;
+
+CREATE INDEX workflow_expires_at ON workflow (expires_at) WHERE expires_at IS NOT NULL;
@@ -0,0 +1,5 @@
+-- Keyset pages sort by the requested fields then by id, and seek past the last row of the previous
+-- page. These indexes let pages sorted by start time, the usual sort of searches, start right at the
+-- cursor in either direction.
+CREATE INDEX workflow_index_start_time_workflow_id_idx ON workflow_index (start_time, workflow_id);
+CREATE INDEX task_index_start_time_task_id_idx ON task_index (start_time, task_id);
@@ -0,0 +1,61 @@
+-- Range partition task_execution_logs by month of created_time, so that the logs past their
+-- retention are removed by dropping whole partitions instead of deleting their rows. Monthly
+-- partitions named task_execution_logs_YYYYMM are added ahead of time by the index DAO, logs
+-- outside of them land in the default partition until their month is added.
+ALTER TABLE task_execution_logs RENAME TO task_execution_logs_unpartitioned;
+ALTER SEQUENCE task_execution_logs_log_id_seq OWNED BY NONE;
+
+CREATE TABLE task_execution_logs (
+  log_id BIGINT NOT NULL DEFAULT nextval('task_execution_logs_log_id_seq'),
+  task_id varchar(255) NOT NULL,
+  log TEXT NOT NULL,
+  created_time TIMESTAMP WITH TIME ZONE NOT NULL
+) PARTITION BY RANGE (created_time);
+
+CREATE TABLE task_execution_logs_default PARTITION OF task_execution_logs DEFAULT;
+
+-- Adds the partition of the month of the given day (in UTC) unless it exists, moving its logs out
+-- of the default partition, which can't hold rows in the range of another partition.
+CREATE OR REPLACE FUNCTION task_execution_logs_add_partition(month_day DATE) RETURNS VOID AS $$
+DECLARE
+  partition_name TEXT := 'task_execution_logs_' || to_char(month_day, 'YYYYMM');
+  range_start TIMESTAMPTZ := date_trunc('month', month_day::TIMESTAMP) AT TIME ZONE 'UTC';
+  range_end TIMESTAMPTZ := (date_trunc('month', month_day::TIMESTAMP) + INTERVAL '1 month') AT TIME ZONE 'UTC';
+BEGIN
+  PERFORM pg_advisory_xact_lock(hashtext('task_execution_logs_add_partition'));
+  IF to_regclass(partition_name) IS NOT NULL THEN
+    RETURN;
+  END IF;
+
+  EXECUTE format('CREATE TABLE %I (LIKE task_execution_logs INCLUDING DEFAULTS)', partition_name);
+  EXECUTE format(
+    'WITH moved AS (DELETE FROM task_execution_logs_default WHERE created_time >= %L AND created_time < %L RETURNING *) '
+    'INSERT INTO %I SELECT * FROM moved',
+    range_start, range_end, partition_name);
+  EXECUTE format(
+    'ALTER TABLE task_execution_logs ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+    partition_name, range_start, range_end);
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+  month_day DATE;
+BEGIN
+  SELECT date_trunc('month', LEAST(MIN(created_time), CURRENT_TIMESTAMP) AT TIME ZONE 'UTC')::DATE
+  INTO month_day
+  FROM task_execution_logs_unpartitioned;
+  WHILE month_day <= (CURRENT_TIMESTAMP AT TIME ZONE 'UTC' + INTERVAL '1 month')::DATE LOOP
+    PERFORM task_execution_logs_add_partition(month_day);
+    month_day := month_day + INTERVAL '1 month';
+  END LOOP;
+END $$;
+
+INSERT INTO task_execution_logs (log_id, task_id, log, created_time)
+SELECT log_id, task_id, log, created_time FROM task_execution_logs_unpartitioned;
+
+DROP TABLE task_execution_logs_unpartitioned;
+
+ALTER SEQUENCE task_execution_logs_log_id_seq OWNED BY task_execution_logs.log_id;
+ALTER TABLE task_execution_logs ADD PRIMARY KEY (log_id, created_time);
+CREATE INDEX task_execution_logs_task_id_idx ON task_execution_logs (task_id);
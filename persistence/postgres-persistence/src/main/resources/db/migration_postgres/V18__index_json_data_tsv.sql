@@ -0,0 +1,32 @@
+-- Free-text searches match a tsvector of the whole document. Computing it on every row scanned made
+-- them sequential scans, so each index table keeps it in a column of its own, indexed with GIN.
+-- Generated columns need PostgreSQL 12, a trigger keeps the column up to date instead.
+CREATE OR REPLACE FUNCTION index_json_data_tsv() RETURNS TRIGGER AS $$
+BEGIN
+  NEW.json_data_tsv := to_tsvector('english', NEW.json_data::text);
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE workflow_index ADD COLUMN json_data_tsv TSVECTOR;
+UPDATE workflow_index SET json_data_tsv = to_tsvector('english', json_data::text);
+ALTER TABLE workflow_index ALTER COLUMN json_data_tsv SET NOT NULL;
+CREATE TRIGGER workflow_index_json_data_tsv_trigger
+  BEFORE INSERT OR UPDATE OF json_data ON workflow_index
+  FOR EACH ROW EXECUTE PROCEDURE index_json_data_tsv();
+
+ALTER TABLE task_index ADD COLUMN json_data_tsv TSVECTOR;
+UPDATE task_index SET json_data_tsv = to_tsvector('english', json_data::text);
+ALTER TABLE task_index ALTER COLUMN json_data_tsv SET NOT NULL;
+CREATE TRIGGER task_index_json_data_tsv_trigger
+  BEFORE INSERT OR UPDATE OF json_data ON task_index
+  FOR EACH ROW EXECUTE PROCEDURE index_json_data_tsv();
+
+-- the task_index_json_data_* indexes were created on workflow_index by mistake, and the text ones
+-- are replaced by the indexes on the new columns
+DROP INDEX IF EXISTS task_index_json_data_json_idx;
+DROP INDEX IF EXISTS task_index_json_data_text_idx;
+DROP INDEX IF EXISTS workflow_index_json_data_text_idx;
+
+CREATE INDEX workflow_index_json_data_tsv_idx ON workflow_index USING gin(json_data_tsv);
+CREATE INDEX task_index_json_data_tsv_idx ON task_index USING gin(json_data_tsv);
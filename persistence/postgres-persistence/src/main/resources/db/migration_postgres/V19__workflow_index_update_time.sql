@@ -0,0 +1,3 @@
+-- Index upserts only replace a workflow with a version updated at the same time or later, so that an
+-- older version written late, such as one retried after a failed batch, does not overwrite it.
+ALTER TABLE workflow_index ADD COLUMN update_time TIMESTAMP WITH TIME ZONE NULL;
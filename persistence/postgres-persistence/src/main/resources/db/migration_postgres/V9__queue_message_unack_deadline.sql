@@ -0,0 +1,7 @@
+-- Explicit unack deadline of popped messages, expired leases are visible to pop again
+ALTER TABLE queue_message ADD COLUMN unack_on TIMESTAMP;
+
+-- popped messages used to be released 60 seconds after their delivery time
+UPDATE queue_message SET unack_on = deliver_on + interval '60 seconds' WHERE popped = true;
+
+CREATE INDEX queue_message_unack_on ON queue_message (queue_name, unack_on) WHERE popped = true;
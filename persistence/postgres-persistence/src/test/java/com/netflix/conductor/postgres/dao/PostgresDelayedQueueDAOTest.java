@@ -0,0 +1,134 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.dao;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
+import com.netflix.conductor.postgres.config.PostgresConfiguration;
+import com.netflix.conductor.postgres.util.Query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@ContextConfiguration(
+        classes = {
+            TestObjectMapperConfiguration.class,
+            PostgresConfiguration.class,
+            FlywayAutoConfiguration.class
+        })
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+        properties = {
+            "conductor.postgres.queueDelayThreshold=60",
+            "conductor.postgres.queueDelayBucketDuration=600"
+        })
+public class PostgresDelayedQueueDAOTest {
+
+    @Autowired private PostgresQueueDAO queueDAO;
+
+    @Qualifier("dataSource")
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired private ObjectMapper objectMapper;
+
+    @Autowired Flyway flyway;
+
+    // clean the database between tests.
+    @Before
+    public void before() {
+        flyway.clean();
+        flyway.migrate();
+        queueDAO.refreshQueues();
+    }
+
+    @Test
+    public void delayedMessagesTest() {
+        String queueName = "delayed_testQueue";
+        queueDAO.push(queueName, "far-msg", 3600);
+        queueDAO.push(queueName, "near-msg", 60);
+        queueDAO.push(queueName, "ready-msg", 0);
+
+        assertEquals(3, queueDAO.getSize(queueName));
+        assertEquals(2, countDelayedMessages(queueName));
+        assertTrue(queueDAO.containsMessage(queueName, "far-msg"));
+        assertFalse(queueDAO.pushIfNotExists(queueName, "far-msg", 3600));
+
+        // the bucket of the message due within the next bucket is moved ahead of time
+        assertEquals(1, queueDAO.moveDelayedMessages());
+        assertEquals(1, countDelayedMessages(queueName));
+        assertEquals(3, queueDAO.getSize(queueName));
+        assertEquals(Collections.singletonList("ready-msg"), queueDAO.pop(queueName, 10, 100));
+
+        // resetting the offset of a delayed message makes it deliverable right away
+        assertTrue(queueDAO.resetOffsetTime(queueName, "far-msg"));
+        assertEquals(0, countDelayedMessages(queueName));
+        List<String> popped = queueDAO.pop(queueName, 10, 100);
+        assertEquals(Collections.singletonList("far-msg"), popped);
+
+        queueDAO.push(queueName, "removed-msg", 3600);
+        queueDAO.remove(queueName, "removed-msg");
+        assertFalse(queueDAO.containsMessage(queueName, "removed-msg"));
+        assertEquals(3, queueDAO.getSize(queueName));
+
+        queueDAO.push(queueName, "flushed-msg", 3600);
+        queueDAO.flush(queueName);
+        assertEquals(0, countDelayedMessages(queueName));
+        assertEquals(0, queueDAO.getSize(queueName));
+    }
+
+    @Test
+    public void pushDelayedMessageAgainTest() {
+        String queueName = "delayed_push_testQueue";
+        queueDAO.push(queueName, "msg", 3600);
+
+        // pushing the message without delay takes it out of the timer table
+        queueDAO.push(queueName, "msg", 0);
+        assertEquals(0, countDelayedMessages(queueName));
+        assertEquals(1, queueDAO.getSize(queueName));
+        assertEquals(Collections.singletonList("msg"), queueDAO.pop(queueName, 10, 100));
+        assertTrue(queueDAO.ack(queueName, "msg"));
+        assertEquals(0, queueDAO.getSize(queueName));
+    }
+
+    private long countDelayedMessages(String queueName) {
+        try (Connection c = dataSource.getConnection()) {
+            String DELAYED = "SELECT COUNT(*) FROM queue_message_delayed WHERE queue_name = ?";
+            try (Query q = new Query(objectMapper, c, DELAYED)) {
+                return q.addParameter(queueName).executeCount();
+            }
+        } catch (Exception ex) {
+            fail(ex.getMessage());
+            return 0;
+        }
+    }
+}
@@ -11,13 +11,16 @@
  */
 package com.netflix.conductor.postgres.dao;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.flywaydb.core.Flyway;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -28,13 +31,17 @@ import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
 import com.netflix.conductor.common.metadata.workflow.WorkflowDef;
 import com.netflix.conductor.dao.ExecutionDAO;
 import com.netflix.conductor.dao.ExecutionDAOTest;
+import com.netflix.conductor.model.TaskModel;
 import com.netflix.conductor.model.WorkflowModel;
 import com.netflix.conductor.postgres.config.PostgresConfiguration;
 
 import com.google.common.collect.Iterables;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @ContextConfiguration(
         classes = {
@@ -76,6 +83,85 @@ public class PostgresExecutionDAOTest extends ExecutionDAOTest {
         assertEquals(10, bycorrelationId.size());
     }
 
+    @Test
+    public void testCreateTasksInBatch() {
+        List<TaskModel> tasks = createTestTasks("batch_task", 200);
+        String workflowId = tasks.get(0).getWorkflowInstanceId();
+        tasks.get(199).setStatus(TaskModel.Status.SKIPPED);
+
+        // the first task is already scheduled when the batch is created
+        assertEquals(
+                1, getExecutionDAO().createTasks(Collections.singletonList(tasks.get(0))).size());
+        List<TaskModel> created = getExecutionDAO().createTasks(tasks);
+        assertEquals(199, created.size());
+        assertEquals(tasks.subList(1, 200), created);
+
+        assertEquals(200, getExecutionDAO().getTasksForWorkflow(workflowId).size());
+        assertEquals(
+                199, getExecutionDAO().getPendingTasksByWorkflow("batch_task", workflowId).size());
+        assertEquals(0, getExecutionDAO().createTasks(tasks).size());
+    }
+
+    @Test
+    public void testGetWorkflowWithTasks() {
+        WorkflowModel workflow = createTestWorkflow();
+        List<TaskModel> tasks = new ArrayList<>(workflow.getTasks());
+        Collections.reverse(tasks);
+        getExecutionDAO().createWorkflow(workflow);
+        getExecutionDAO().createTasks(tasks);
+
+        WorkflowModel found = getExecutionDAO().getWorkflow(workflow.getWorkflowId(), true);
+        assertNotNull(found);
+        assertEquals(workflow.getWorkflowId(), found.getWorkflowId());
+        assertEquals(3, found.getTasks().size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, found.getTasks().get(i).getSeq());
+        }
+        assertNull(getExecutionDAO().getWorkflow(UUID.randomUUID().toString(), true));
+    }
+
+    @Test
+    public void testGetWorkflowsInBatches() {
+        WorkflowModel workflow = createTestWorkflow();
+        List<String> ids = generateWorkflows(workflow, 150);
+        String lastId = Iterables.getLast(ids);
+        workflow.getTasks().forEach(task -> task.setWorkflowInstanceId(lastId));
+        getExecutionDAO().createTasks(workflow.getTasks());
+
+        List<String> requested = new ArrayList<>(ids);
+        requested.add(1, UUID.randomUUID().toString());
+        List<WorkflowModel> found = executionDAO.getWorkflows(requested);
+        assertEquals(
+                ids,
+                found.stream().map(WorkflowModel::getWorkflowId).collect(Collectors.toList()));
+
+        WorkflowModel last = found.get(found.size() - 1);
+        assertEquals(3, last.getTasks().size());
+        assertEquals(1, last.getTasks().get(0).getSeq());
+        assertTrue(found.get(0).getTasks().isEmpty());
+    }
+
+    @Test
+    public void testGetTasksPages() {
+        List<TaskModel> tasks = createTestTasks("paged_task", 25);
+        getExecutionDAO().createTasks(tasks);
+
+        List<String> pagedIds = new ArrayList<>();
+        String startKey = null;
+        List<TaskModel> page;
+        do {
+            page = getExecutionDAO().getTasks("paged_task", startKey, 10);
+            page.forEach(task -> pagedIds.add(task.getTaskId()));
+            if (!page.isEmpty()) {
+                startKey = Iterables.getLast(page).getTaskId();
+            }
+        } while (page.size() == 10);
+
+        List<String> expectedIds =
+                tasks.stream().map(TaskModel::getTaskId).sorted().collect(Collectors.toList());
+        assertEquals(expectedIds, pagedIds);
+    }
+
     @Test
     public void testRemoveWorkflow() {
         WorkflowDef def = new WorkflowDef();
@@ -99,16 +185,27 @@ public class PostgresExecutionDAOTest extends ExecutionDAOTest {
         WorkflowModel workflow = createTestWorkflow();
         workflow.setWorkflowDefinition(def);
 
-        List<String> ids = generateWorkflows(workflow, 1);
+        List<String> ids = generateWorkflows(workflow, 2);
 
-        final ExecutionDAO execDao = Mockito.spy(getExecutionDAO());
-        assertEquals(1, execDao.getPendingWorkflowCount("workflow"));
-        ids.forEach(wfId -> execDao.removeWorkflowWithExpiry(wfId, 1));
-        Mockito.verify(execDao, Mockito.timeout(10 * 1000)).removeWorkflow(Iterables.getLast(ids));
+        assertEquals(2, getExecutionDAO().getPendingWorkflowCount("workflow"));
+        assertTrue(getExecutionDAO().removeWorkflowWithExpiry(ids.get(0), 0));
+        assertTrue(getExecutionDAO().removeWorkflowWithExpiry(ids.get(1), 3600));
+        assertFalse(getExecutionDAO().removeWorkflowWithExpiry("missing", 0));
+
+        // only the expired workflow is removed, by whichever reaper gets to it first
+        executionDAO.removeExpiredWorkflows();
+        assertNull(getExecutionDAO().getWorkflow(ids.get(0), false));
+        assertNotNull(getExecutionDAO().getWorkflow(ids.get(1), false));
+        assertEquals(1, getExecutionDAO().getPendingWorkflowCount("workflow"));
     }
 
     @Override
     public ExecutionDAO getExecutionDAO() {
         return executionDAO;
     }
+
+    @Override
+    protected List<String> removeWorkflows(List<String> workflowIds) {
+        return executionDAO.removeWorkflows(workflowIds);
+    }
 }
@@ -15,9 +15,13 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -41,6 +45,7 @@ import com.netflix.conductor.common.run.TaskSummary;
 import com.netflix.conductor.common.run.Workflow;
 import com.netflix.conductor.common.run.WorkflowSummary;
 import com.netflix.conductor.postgres.config.PostgresConfiguration;
+import com.netflix.conductor.postgres.util.CursorSearchResult;
 import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -218,6 +223,46 @@ public class PostgresIndexDAOTest {
         compareTaskSummary(ts);
     }
 
+    @Test
+    public void testIndexOlderVersionIsIgnored() throws SQLException {
+        WorkflowSummary wfs = getMockWorkflowSummary("workflow-id");
+        wfs.setUpdateTime("2023-02-07T09:00:00Z");
+        indexDAO.indexWorkflow(wfs);
+        TaskSummary ts = getMockTaskSummary("task-id");
+        indexDAO.indexTask(ts);
+
+        // versions updated before the indexed ones, written late, are left out
+        WorkflowSummary olderWfs = getMockWorkflowSummary("workflow-id");
+        olderWfs.setUpdateTime("2023-02-07T08:50:00Z");
+        olderWfs.setStatus(Workflow.WorkflowStatus.RUNNING);
+        indexDAO.indexWorkflow(olderWfs);
+        TaskSummary olderTs = getMockTaskSummary("task-id");
+        olderTs.setUpdateTime("2023-02-07T09:41:50Z");
+        olderTs.setStatus(Task.Status.IN_PROGRESS);
+        indexDAO.indexTask(olderTs);
+
+        compareWorkflowSummary(wfs);
+        compareTaskSummary(ts);
+    }
+
+    @Test
+    public void testAsyncIndexWorkflowAndTask() throws Exception {
+        WorkflowSummary wfs = getMockWorkflowSummary("workflow-id");
+        TaskSummary ts = getMockTaskSummary("task-id");
+
+        CompletableFuture<Void> workflowIndexed = indexDAO.asyncIndexWorkflow(wfs);
+        WorkflowSummary updated = getMockWorkflowSummary("workflow-id");
+        updated.setStatus(Workflow.WorkflowStatus.FAILED);
+        CompletableFuture<Void> updateIndexed = indexDAO.asyncIndexWorkflow(updated);
+        CompletableFuture<Void> taskIndexed = indexDAO.asyncIndexTask(ts);
+
+        CompletableFuture.allOf(workflowIndexed, updateIndexed, taskIndexed)
+                .get(10, TimeUnit.SECONDS);
+
+        compareWorkflowSummary(updated);
+        compareTaskSummary(ts);
+    }
+
     @Test
     public void testAddTaskExecutionLogs() throws SQLException {
         List<TaskExecLog> logs = new ArrayList<>();
@@ -235,6 +280,29 @@ public class PostgresIndexDAOTest {
         assertEquals(new Date(1675845987000L), records.get(1).get("created_time"));
     }
 
+    @Test
+    public void testAsyncAddTaskExecutionLogsToMonthlyPartition() throws Exception {
+        indexDAO.maintainTaskExecutionLogPartitions();
+        long now = System.currentTimeMillis();
+        List<TaskExecLog> logs = new ArrayList<>();
+        logs.add(getMockTaskExecutionLog(now, "Log 1"));
+        logs.add(getMockTaskExecutionLog(now + 1, "Log 2"));
+
+        indexDAO.asyncAddTaskExecutionLogs(logs).get(10, TimeUnit.SECONDS);
+
+        String partition =
+                "task_execution_logs_"
+                        + YearMonth.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyyMM"));
+        List<Map<String, Object>> records =
+                queryDb(
+                        "SELECT tableoid::regclass::text AS partition, log FROM task_execution_logs ORDER BY created_time ASC");
+        assertEquals("Wrong number of logs returned", 2, records.size());
+        assertEquals("Log 1", records.get(0).get("log"));
+        assertEquals(partition, records.get(0).get("partition"));
+        assertEquals("Log 2", records.get(1).get("log"));
+        assertEquals(partition, records.get(1).get("partition"));
+    }
+
     @Test
     public void testSearchWorkflowSummary() {
         WorkflowSummary wfs = getMockWorkflowSummary("workflow-id");
@@ -302,7 +370,7 @@ public class PostgresIndexDAOTest {
         List<String> orderBy = Arrays.asList(new String[] {"workflowId:DESC"});
         SearchResult<WorkflowSummary> results =
                 indexDAO.searchWorkflowSummary("", "*", 0, 2, orderBy);
-        assertEquals("Wrong totalHits returned", 3, results.getTotalHits());
+        assertEquals("Wrong totalHits returned", 5, results.getTotalHits());
         assertEquals("Wrong number of results returned", 2, results.getResults().size());
         assertEquals(
                 "Results returned in wrong order",
@@ -332,6 +400,50 @@ public class PostgresIndexDAOTest {
                 results.getResults().get(0).getWorkflowId());
     }
 
+    @Test
+    public void testSearchWorkflowSummaryWithCursor() {
+        for (int i = 0; i < 5; i++) {
+            WorkflowSummary wfs = getMockWorkflowSummary("workflow-id-" + i);
+            indexDAO.indexWorkflow(wfs);
+        }
+
+        List<String> orderBy = Arrays.asList("startTime:DESC", "workflowId:DESC");
+        List<String> workflowIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorSearchResult<WorkflowSummary> results =
+                    indexDAO.searchWorkflowSummary("", "*", cursor, 2, orderBy);
+            assertTrue("Page too large", results.getResults().size() <= 2);
+            results.getResults().forEach(wfs -> workflowIds.add(wfs.getWorkflowId()));
+            cursor = results.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(
+                "Results returned in wrong order",
+                Arrays.asList(
+                        "workflow-id-4",
+                        "workflow-id-3",
+                        "workflow-id-2",
+                        "workflow-id-1",
+                        "workflow-id-0"),
+                workflowIds);
+    }
+
+    @Test
+    public void testGetWorkflowCount() {
+        for (int i = 0; i < 5; i++) {
+            WorkflowSummary wfs = getMockWorkflowSummary("workflow-id-" + i);
+            if (i % 2 == 0) {
+                wfs.setStatus(Workflow.WorkflowStatus.FAILED);
+            }
+            indexDAO.indexWorkflow(wfs);
+        }
+
+        assertEquals(5, indexDAO.getWorkflowCount("", "*"));
+        assertEquals(3, indexDAO.getWorkflowCount("status=\"FAILED\"", "*"));
+        assertEquals(0, indexDAO.getWorkflowCount("workflowType=\"other\"", "*"));
+    }
+
     @Test
     public void testSearchTaskSummary() {
         TaskSummary ts = getMockTaskSummary("task-id");
@@ -346,6 +458,23 @@ public class PostgresIndexDAOTest {
                 "Wrong task returned", ts.getTaskId(), results.getResults().get(0).getTaskId());
     }
 
+    @Test
+    public void testFullTextSearchTaskSummary() {
+        TaskSummary ts = getMockTaskSummary("task-id");
+        indexDAO.indexTask(ts);
+
+        SearchResult<TaskSummary> results =
+                indexDAO.searchTaskSummary("", "updated-type", 0, 15, new ArrayList());
+        assertEquals("Wrong number of results returned", 0, results.getResults().size());
+
+        ts.setTaskType("updated-type");
+        indexDAO.indexTask(ts);
+
+        results = indexDAO.searchTaskSummary("", "updated-type", 0, 15, new ArrayList());
+        assertEquals("No results returned", 1, results.getResults().size());
+        assertEquals("Wrong task returned", ts.getTaskId(), results.getResults().get(0).getTaskId());
+    }
+
     @Test
     public void testSearchTaskSummaryPagination() {
         for (int i = 0; i < 5; i++) {
@@ -355,7 +484,7 @@ public class PostgresIndexDAOTest {
 
         List<String> orderBy = Arrays.asList(new String[] {"taskId:DESC"});
         SearchResult<TaskSummary> results = indexDAO.searchTaskSummary("", "*", 0, 2, orderBy);
-        assertEquals("Wrong totalHits returned", 3, results.getTotalHits());
+        assertEquals("Wrong totalHits returned", 5, results.getTotalHits());
         assertEquals("Wrong number of results returned", 2, results.getResults().size());
         assertEquals(
                 "Results returned in wrong order",
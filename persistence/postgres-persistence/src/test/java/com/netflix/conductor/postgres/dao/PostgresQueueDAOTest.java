@@ -12,10 +12,16 @@
 package com.netflix.conductor.postgres.dao;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
@@ -32,16 +38,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.postgres.config.PostgresConfiguration;
+import com.netflix.conductor.postgres.config.PostgresProperties;
 import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -69,6 +78,10 @@ public class PostgresQueueDAOTest {
 
     @Autowired private ObjectMapper objectMapper;
 
+    @Qualifier("postgresRetryTemplate")
+    @Autowired
+    private RetryTemplate retryTemplate;
+
     @Rule public TestName name = new TestName();
 
     @Autowired Flyway flyway;
@@ -78,6 +91,7 @@ public class PostgresQueueDAOTest {
     public void before() {
         flyway.clean();
         flyway.migrate();
+        queueDAO.refreshQueues();
     }
 
     @Test
@@ -211,6 +225,66 @@ public class PostgresQueueDAOTest {
         }
     }
 
+    @Test
+    public void pushMessagesInBulkTest() {
+        String queueName = "bulk_push_testQueue";
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Message m = new Message("bulk-" + i, "{\"id\": " + i + "}", "");
+            m.setPriority(i % 3);
+            messages.add(m);
+        }
+        // the last payload pushed for a duplicated id wins
+        messages.add(new Message("bulk-0", "{\"id\": \"last\"}", ""));
+
+        queueDAO.push(queueName, messages);
+        assertEquals(100, queueDAO.getSize(queueName));
+
+        List<Message> polled = queueDAO.pollMessages(queueName, 100, 100);
+        assertEquals(100, polled.size());
+        Message first =
+                polled.stream().filter(m -> m.getId().equals("bulk-0")).findFirst().orElse(null);
+        assertNotNull(first);
+        assertEquals("{\"id\": \"last\"}", first.getPayload());
+    }
+
+    @Test
+    public void bulkAckAndRemoveTest() {
+        String queueName = "bulk_ack_testQueue";
+        for (int i = 0; i < 10; i++) {
+            queueDAO.push(queueName, "msg" + i, 0);
+        }
+        List<String> popped = queueDAO.pop(queueName, 5, 100);
+        assertEquals(5, popped.size());
+
+        List<String> toAck = new ArrayList<>(popped);
+        toAck.add("unknown");
+        List<String> acked = queueDAO.ack(queueName, toAck);
+        assertEquals(5, acked.size());
+        assertTrue(acked.containsAll(popped));
+        assertEquals(5, queueDAO.getSize(queueName));
+
+        queueDAO.remove(queueName, Arrays.asList("msg5", "msg6"));
+        assertEquals(3, queueDAO.getSize(queueName));
+        assertFalse(queueDAO.containsMessage(queueName, "msg5"));
+        assertTrue(queueDAO.containsMessage(queueName, "msg7"));
+
+        assertTrue(queueDAO.ack(queueName, new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void releaseTest() {
+        String queueName = "release_testQueue";
+        queueDAO.push(queueName, "msg0", 0);
+        queueDAO.push(queueName, "msg1", 0);
+        assertEquals(2, queueDAO.pop(queueName, 2, 100).size());
+        assertTrue(queueDAO.pop(queueName, 2, 100).isEmpty());
+
+        // released messages are visible to the next poll without waiting for the unack sweep
+        queueDAO.release(queueName, Arrays.asList("msg0", "unknown"));
+        assertEquals(Arrays.asList("msg0"), queueDAO.pop(queueName, 2, 100));
+    }
+
     /** Test fix for https://github.com/Netflix/conductor/issues/1892 */
     @Test
     public void containsMessageTest() {
@@ -325,6 +399,149 @@ public class PostgresQueueDAOTest {
         }
     }
 
+    @Test
+    public void expiredLeaseTest() {
+        final String queueName = "lease_testQueue";
+        queueDAO.push(queueName, "lease-msg", 0);
+
+        assertEquals(1, queueDAO.pollMessages(queueName, 1, 0).size());
+        assertTrue(queueDAO.pollMessages(queueName, 1, 0).isEmpty());
+
+        // an expired lease makes the message visible again without any unack processing
+        assertTrue(queueDAO.setUnackTimeout(queueName, "lease-msg", 0));
+        Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+        List<Message> polled = queueDAO.pollMessages(queueName, 1, 0);
+        assertEquals(1, polled.size());
+        assertEquals("lease-msg", polled.get(0).getId());
+        assertTrue(queueDAO.pollMessages(queueName, 1, 0).isEmpty());
+    }
+
+    @Test
+    public void pushedAgainWhilePoppedTest() throws Exception {
+        final String queueName = "repushed_lease_testQueue";
+        queueDAO.push(queueName, "repushed-msg", 0);
+        assertEquals(1, queueDAO.pollMessages(queueName, 1, 0).size());
+
+        // pushed again with a delay while popped, the message waits for its new delivery time
+        // even once its lease expired
+        queueDAO.push(queueName, "repushed-msg", 60);
+        expireLeases(queueName);
+        assertTrue(queueDAO.pollMessages(queueName, 1, 0).isEmpty());
+
+        // processing the unacks of the queue makes the expired lease count as ready again
+        assertEquals(1L, queueDAO.queuesDetailVerbose().get(queueName).get("a").get("uacked"));
+        queueDAO.processUnacks(queueName);
+        assertEquals(0L, queueDAO.queuesDetailVerbose().get(queueName).get("a").get("uacked"));
+        assertEquals(1, queueDAO.getSize(queueName));
+        assertTrue(queueDAO.pollMessages(queueName, 1, 0).isEmpty());
+    }
+
+    @Test
+    public void queueDepthCountersTest() throws SQLException {
+        final String queueName = "depth_testQueue";
+        for (int i = 0; i < 6; i++) {
+            queueDAO.push(queueName, "depth-" + i, i < 5 ? 0 : 3600);
+        }
+        assertDepth(queueName, 6, 0);
+
+        List<String> popped = queueDAO.pop(queueName, 3, 100);
+        assertEquals(3, popped.size());
+        assertDepth(queueName, 3, 3);
+
+        assertTrue(queueDAO.ack(queueName, popped.get(0)));
+        assertFalse(queueDAO.ack(queueName, popped.get(0)));
+        assertDepth(queueName, 3, 2);
+
+        queueDAO.remove(queueName, "depth-5");
+        assertDepth(queueName, 2, 2);
+
+        queueDAO.ack(queueName, popped.subList(1, 3));
+        assertDepth(queueName, 2, 0);
+
+        // pushing a waiting message again does not count it twice
+        String waiting =
+                Arrays.asList("depth-0", "depth-1", "depth-2", "depth-3", "depth-4").stream()
+                        .filter(id -> !popped.contains(id))
+                        .findFirst()
+                        .get();
+        queueDAO.push(queueName, waiting, 0);
+        assertDepth(queueName, 2, 0);
+
+        queueDAO.flush(queueName);
+        assertDepth(queueName, 0, 0);
+    }
+
+    @Test
+    public void cachedQueueDepthsTest() {
+        PostgresProperties properties = new PostgresProperties();
+        properties.setQueueDepthCacheDuration(Duration.ofHours(1));
+        PostgresQueueDAO cachedQueueDAO =
+                new PostgresQueueDAO(retryTemplate, objectMapper, dataSource, properties);
+
+        final String queueName = "cached_depth_testQueue";
+        for (int i = 0; i < 3; i++) {
+            cachedQueueDAO.push(queueName, "cached-" + i, 0);
+        }
+        cachedQueueDAO.pop(queueName, 1, 100);
+        assertEquals(3, cachedQueueDAO.getSize(queueName));
+        assertEquals(2L, cachedQueueDAO.queuesDetail().get(queueName).longValue());
+        assertEquals(
+                1L,
+                cachedQueueDAO
+                        .queuesDetailVerbose()
+                        .get(queueName)
+                        .get("a")
+                        .get("uacked")
+                        .longValue());
+
+        // later pushes only show once the snapshot expires, the uncached reads see them
+        cachedQueueDAO.push(queueName, "cached-3", 0);
+        assertEquals(3, cachedQueueDAO.getSize(queueName));
+        assertEquals(4, queueDAO.getSize(queueName));
+        assertEquals(0, cachedQueueDAO.getSize("unknown_testQueue"));
+        cachedQueueDAO.destroy();
+    }
+
+    @Test
+    public void partitionedQueuesTest() throws SQLException {
+        final int queueCount = 20;
+        for (int i = 0; i < queueCount; i++) {
+            queueDAO.push("partitioned_testQueue_" + i, "first", 0);
+            queueDAO.push("partitioned_testQueue_" + i, "second", 0);
+        }
+
+        // each queue lives in a single partition, the queues spread over several of them
+        Map<String, Set<String>> partitionsByQueue = new HashMap<>();
+        try (Connection c = dataSource.getConnection()) {
+            String GET_PARTITIONS =
+                    "SELECT queue_name, tableoid::regclass::text AS partition FROM queue_message";
+            try (Query q = new Query(objectMapper, c, GET_PARTITIONS)) {
+                for (Map<String, Object> row : q.executeAndFetchMap()) {
+                    partitionsByQueue
+                            .computeIfAbsent((String) row.get("queue_name"), k -> new HashSet<>())
+                            .add((String) row.get("partition"));
+                }
+            }
+        }
+        assertEquals(queueCount, partitionsByQueue.size());
+        Set<String> partitions = new HashSet<>();
+        for (Set<String> queuePartitions : partitionsByQueue.values()) {
+            assertEquals(1, queuePartitions.size());
+            partitions.addAll(queuePartitions);
+        }
+        assertTrue(partitions.size() > 1);
+
+        Map<String, Long> details = queueDAO.queuesDetail();
+        for (int i = 0; i < queueCount; i++) {
+            String queueName = "partitioned_testQueue_" + i;
+            assertEquals(2L, details.get(queueName).longValue());
+            List<String> popped = queueDAO.pop(queueName, 1, 100);
+            assertEquals(1, popped.size());
+            assertTrue(queueDAO.ack(queueName, popped.get(0)));
+            assertDepth(queueName, 1, 0);
+        }
+    }
+
     @Test
     public void processUnacksTest() {
         processUnacks(
@@ -345,6 +562,40 @@ public class PostgresQueueDAOTest {
                 "process_unacks_test");
     }
 
+    /** Checks the depth counters of the queue against the messages actually in it. */
+    private void assertDepth(String queueName, long ready, long unacked) throws SQLException {
+        String GET_DEPTH =
+                "SELECT COALESCE(SUM(ready), 0) AS ready, COALESCE(SUM(unacked), 0) AS unacked "
+                        + "FROM queue_depth WHERE queue_name = ?";
+        String COUNT_MESSAGES =
+                "SELECT COUNT(*) FILTER (WHERE NOT popped) AS ready, "
+                        + "COUNT(*) FILTER (WHERE popped) AS unacked "
+                        + "FROM queue_message WHERE queue_name = ?";
+        try (Connection c = dataSource.getConnection()) {
+            for (String sql : Arrays.asList(GET_DEPTH, COUNT_MESSAGES)) {
+                try (Query q = new Query(objectMapper, c, sql)) {
+                    Map<String, Object> depth =
+                            q.addParameter(queueName).executeAndFetchMap().get(0);
+                    assertEquals(ready, ((Number) depth.get("ready")).longValue());
+                    assertEquals(unacked, ((Number) depth.get("unacked")).longValue());
+                }
+            }
+        }
+        assertEquals(ready + unacked, queueDAO.getSize(queueName));
+    }
+
+    private void expireLeases(String queueName) throws SQLException {
+        try (Connection c = dataSource.getConnection()) {
+            String EXPIRE_LEASES =
+                    "UPDATE queue_message SET unack_on = current_timestamp - interval '1 second' "
+                            + "WHERE queue_name = ? AND popped = true";
+            try (Query q = new Query(objectMapper, c, EXPIRE_LEASES)) {
+                q.addParameter(queueName).executeUpdate();
+            }
+            c.commit();
+        }
+    }
+
     private void processUnacks(Runnable unack, String queueName) {
         // Count of messages in the queue(s)
         final int count = 10;
@@ -0,0 +1,96 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.dao;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
+import com.netflix.conductor.core.events.queue.Message;
+import com.netflix.conductor.postgres.config.PostgresConfiguration;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@ContextConfiguration(
+        classes = {
+            TestObjectMapperConfiguration.class,
+            PostgresConfiguration.class,
+            FlywayAutoConfiguration.class
+        })
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "conductor.postgres.queueNotificationsEnabled=true")
+public class PostgresQueueNotificationsTest {
+
+    @Autowired private PostgresQueueDAO queueDAO;
+
+    @Autowired Flyway flyway;
+
+    // clean the database between tests.
+    @Before
+    public void before() {
+        flyway.clean();
+        flyway.migrate();
+        queueDAO.refreshQueues();
+    }
+
+    @Test
+    public void pollMessagesWithNotificationsTest() {
+        final String queueName = "notifications_testQueue";
+        AtomicLong pushedAt = new AtomicLong();
+        Thread pusher =
+                new Thread(
+                        () -> {
+                            Uninterruptibles.sleepUninterruptibly(500, TimeUnit.MILLISECONDS);
+                            pushedAt.set(System.currentTimeMillis());
+                            queueDAO.push(queueName, "notified-msg", 0);
+                        });
+        pusher.start();
+
+        List<Message> polled = queueDAO.pollMessages(queueName, 1, 10_000);
+        long wokenAt = System.currentTimeMillis();
+        assertEquals(1, polled.size());
+        assertEquals("notified-msg", polled.get(0).getId());
+        // the push wakes the poll up, well before the capped wait for a notification would end
+        assertTrue(wokenAt - pushedAt.get() < 500);
+
+        // nothing is pushed, the long poll must still give up after the timeout
+        long start = System.currentTimeMillis();
+        polled = queueDAO.pollMessages(queueName, 1, 1_500);
+        assertTrue(polled.isEmpty());
+        assertTrue(System.currentTimeMillis() - start >= 1_500);
+    }
+
+    @Test
+    public void pollDelayedMessageWithNotificationsTest() {
+        final String queueName = "notifications_delayed_testQueue";
+
+        // delayed pushes do not notify, the capped waits still pick the message up once due
+        queueDAO.push(queueName, "delayed-msg", 1);
+        List<Message> polled = queueDAO.pollMessages(queueName, 1, 5_000);
+        assertEquals(1, polled.size());
+        assertEquals("delayed-msg", polled.get(0).getId());
+    }
+}
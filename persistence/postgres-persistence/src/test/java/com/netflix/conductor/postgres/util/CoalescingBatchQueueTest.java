@@ -0,0 +1,151 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingBatchQueueTest {
+
+    private CoalescingBatchQueue<String> queue;
+
+    @Test
+    public void testPendingDocumentsAreReplacedAndStoredInBatches() {
+        List<List<String>> stored = new ArrayList<>();
+        CoalescingBatchQueue<String> queue = queue(2, stored::add);
+
+        CompletableFuture<Void> first = queue.offer("a:1");
+        CompletableFuture<Void> replaced = queue.offer("a:2");
+        queue.offer("b:1");
+        queue.offer("c:1");
+        assertEquals(first, replaced);
+        assertNull(queue.offer("d:1"));
+
+        assertTrue(queue.flushBatch());
+        assertFalse(queue.flushBatch());
+        assertEquals(Arrays.asList(Arrays.asList("a:2", "b:1"), Arrays.asList("c:1")), stored);
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() {
+        List<List<String>> stored = new ArrayList<>();
+        int[] calls = {0};
+        CoalescingBatchQueue<String> queue =
+                queue(
+                        10,
+                        batch -> {
+                            if (calls[0]++ == 0) {
+                                throw new IllegalStateException("unavailable");
+                            }
+                            stored.add(batch);
+                        });
+
+        CompletableFuture<Void> indexed = queue.offer("a:1");
+        assertFalse(queue.flushBatch());
+        assertFalse(indexed.isDone());
+        assertEquals(1, queue.size());
+
+        queue.flushBatch();
+        assertTrue(indexed.isDone());
+        assertFalse(indexed.isCompletedExceptionally());
+        assertEquals(Arrays.asList(Arrays.asList("a:1")), stored);
+    }
+
+    @Test
+    public void testFailedDocumentDefersToNewerVersion() {
+        List<List<String>> stored = new ArrayList<>();
+        queue(
+                10,
+                batch -> {
+                    if (batch.contains("a:1")) {
+                        // a newer version is offered while the batch is being stored
+                        queue.offer("a:2");
+                        throw new IllegalStateException("unavailable");
+                    }
+                    stored.add(batch);
+                });
+
+        CompletableFuture<Void> indexed = queue.offer("a:1");
+        queue.flushBatch();
+        assertFalse(indexed.isDone());
+
+        queue.flushBatch();
+        assertTrue(indexed.isDone());
+        assertFalse(indexed.isCompletedExceptionally());
+        assertEquals(Arrays.asList(Arrays.asList("a:2")), stored);
+    }
+
+    @Test
+    public void testDocumentIsGivenUpAfterMaxAttempts() {
+        int[] calls = {0};
+        CoalescingBatchQueue<String> queue =
+                queue(
+                        10,
+                        batch -> {
+                            calls[0]++;
+                            throw new IllegalStateException("unavailable");
+                        });
+
+        CompletableFuture<Void> indexed = queue.offer("a:1");
+        for (int i = 0; i < CoalescingBatchQueue.MAX_STORE_ATTEMPTS + 1; i++) {
+            queue.flushBatch();
+        }
+        assertTrue(indexed.isCompletedExceptionally());
+        assertEquals(CoalescingBatchQueue.MAX_STORE_ATTEMPTS, calls[0]);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testDrainStoresOrGivesUpOnAllDocuments() {
+        List<List<String>> stored = new ArrayList<>();
+        CoalescingBatchQueue<String> queue =
+                queue(
+                        1,
+                        batch -> {
+                            if (batch.contains("b:1")) {
+                                throw new IllegalStateException("unavailable");
+                            }
+                            stored.add(batch);
+                        });
+
+        CompletableFuture<Void> first = queue.offer("a:1");
+        CompletableFuture<Void> second = queue.offer("b:1");
+        CompletableFuture<Void> third = queue.offer("c:1");
+        queue.drain();
+
+        assertEquals(0, queue.size());
+        assertFalse(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertFalse(third.isCompletedExceptionally());
+        assertTrue(first.isDone() && third.isDone());
+        assertEquals(Arrays.asList(Arrays.asList("a:1"), Arrays.asList("c:1")), stored);
+    }
+
+    /** A queue of "id:version" documents holding up to 3 of them. */
+    private CoalescingBatchQueue<String> queue(int batchSize, Consumer<List<String>> store) {
+        queue =
+                new CoalescingBatchQueue<>(
+                        "testQueue", 3, batchSize, document -> document.split(":")[0], store);
+        return queue;
+    }
+}
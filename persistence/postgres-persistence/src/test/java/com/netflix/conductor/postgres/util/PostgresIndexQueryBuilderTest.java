@@ -21,6 +21,7 @@ import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 public class PostgresIndexQueryBuilderTest {
@@ -267,7 +268,7 @@ public class PostgresIndexQueryBuilderTest {
                 new PostgresIndexQueryBuilder(
                         "table_name", "", freeText, 0, 15, Arrays.asList(query));
         String expectedQuery =
-                "SELECT json_data::TEXT FROM table_name WHERE to_tsvector(json_data::text) @@ to_tsquery(?) LIMIT ? OFFSET ?";
+                "SELECT json_data::TEXT FROM table_name WHERE json_data_tsv @@ to_tsquery('english', ?) LIMIT ? OFFSET ?";
         assertEquals(expectedQuery, builder.getQuery());
     }
 
@@ -282,4 +283,153 @@ public class PostgresIndexQueryBuilderTest {
                 "SELECT json_data::TEXT FROM table_name WHERE json_data @> ?::JSONB LIMIT ? OFFSET ?";
         assertEquals(expectedQuery, builder.getQuery());
     }
+
+    @Test
+    void shouldGenerateKeysetQueryForFirstPage() throws SQLException {
+        String[] sort = {"startTime:DESC"};
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name", "workflow_id", "", "", null, 15, Arrays.asList(sort));
+        String expectedQuery =
+                "SELECT json_data::TEXT, start_time::TEXT, workflow_id::TEXT FROM table_name ORDER BY start_time DESC, workflow_id DESC LIMIT ?";
+        assertEquals(expectedQuery, builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addParameters(mockQuery);
+        verify(mockQuery).addParameter(16);
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldGenerateKeysetQuerySeekingPastCursor() throws SQLException {
+        String[] sort = {"startTime:DESC"};
+        PostgresIndexQueryBuilder first =
+                new PostgresIndexQueryBuilder(
+                        "table_name", "workflow_id", "", "", null, 15, Arrays.asList(sort));
+        String cursor = first.getCursor(List.of("2023-02-07 08:42:45+00", "abc.123"));
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name",
+                        "workflow_id",
+                        "status=\"COMPLETED\"",
+                        "",
+                        cursor,
+                        15,
+                        Arrays.asList(sort));
+        String expectedQuery =
+                "SELECT json_data::TEXT, start_time::TEXT, workflow_id::TEXT FROM table_name WHERE status = ? AND (start_time, workflow_id) < (?::TIMESTAMPTZ, ?) ORDER BY start_time DESC, workflow_id DESC LIMIT ?";
+        assertEquals(expectedQuery, builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("COMPLETED");
+        inOrder.verify(mockQuery).addParameter("2023-02-07 08:42:45+00");
+        inOrder.verify(mockQuery).addParameter("abc.123");
+        inOrder.verify(mockQuery).addParameter(16);
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldGenerateKeysetQueryForMixedSortDirections() throws SQLException {
+        String[] sort = {"workflowType:ASC", "startTime:DESC"};
+        PostgresIndexQueryBuilder first =
+                new PostgresIndexQueryBuilder(
+                        "table_name", "workflow_id", "", "", null, 15, Arrays.asList(sort));
+        String cursor = first.getCursor(List.of("type", "2023-02-07 08:42:45+00", "abc"));
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name", "workflow_id", "", "", cursor, 15, Arrays.asList(sort));
+        String expectedQuery =
+                "SELECT json_data::TEXT, workflow_type::TEXT, start_time::TEXT, workflow_id::TEXT FROM table_name "
+                        + "WHERE ((workflow_type > ?) OR (workflow_type = ? AND start_time < ?::TIMESTAMPTZ) "
+                        + "OR (workflow_type = ? AND start_time = ?::TIMESTAMPTZ AND workflow_id < ?)) "
+                        + "ORDER BY workflow_type ASC, start_time DESC, workflow_id DESC LIMIT ?";
+        assertEquals(expectedQuery, builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addParameters(mockQuery);
+        verify(mockQuery, times(3)).addParameter("type");
+        verify(mockQuery, times(2)).addParameter("2023-02-07 08:42:45+00");
+        verify(mockQuery).addParameter("abc");
+        verify(mockQuery).addParameter(16);
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldNotAllowKeysetPagesSortedByNullableColumn() {
+        String[] sort = {"correlationId:ASC"};
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new PostgresIndexQueryBuilder(
+                                        "table_name",
+                                        "workflow_id",
+                                        "",
+                                        "",
+                                        null,
+                                        15,
+                                        Arrays.asList(sort))
+                                .getQuery());
+    }
+
+    @Test
+    void shouldAllowKeysetPagesSortedByUpdateTimeOfTasksOnly() {
+        String[] sort = {"updateTime:DESC"};
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "task_index", "task_id", "", "", null, 15, Arrays.asList(sort));
+        String expectedQuery =
+                "SELECT json_data::TEXT, update_time::TEXT, task_id::TEXT FROM task_index ORDER BY update_time DESC, task_id DESC LIMIT ?";
+        assertEquals(expectedQuery, builder.getQuery());
+
+        // update_time of workflow_index is nullable
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new PostgresIndexQueryBuilder(
+                                        "workflow_index",
+                                        "workflow_id",
+                                        "",
+                                        "",
+                                        null,
+                                        15,
+                                        Arrays.asList(sort))
+                                .getQuery());
+    }
+
+    @Test
+    void shouldNotAllowCursorOfAnotherSort() {
+        String[] sort = {"startTime:DESC"};
+        PostgresIndexQueryBuilder first =
+                new PostgresIndexQueryBuilder(
+                        "table_name", "workflow_id", "", "", null, 15, new ArrayList<>());
+        String cursor = first.getCursor(List.of("abc"));
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new PostgresIndexQueryBuilder(
+                                "table_name",
+                                "workflow_id",
+                                "",
+                                "",
+                                cursor,
+                                15,
+                                Arrays.asList(sort)));
+    }
+
+    @Test
+    void shouldGenerateCountQueries() throws SQLException {
+        String inputQuery = "status IN (COMPLETED,RUNNING)";
+        String[] sort = {"startTime:DESC"};
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name", inputQuery, "", 10, 15, Arrays.asList(sort));
+        assertEquals(
+                "SELECT COUNT(*) FROM table_name WHERE status = ANY(?)", builder.getCountQuery());
+        assertEquals(
+                "EXPLAIN (FORMAT JSON) SELECT 1 FROM table_name WHERE status = ANY(?)",
+                builder.getCountEstimateQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addConditionParameters(mockQuery);
+        verify(mockQuery).addParameter(new ArrayList<>(List.of("COMPLETED", "RUNNING")));
+        verifyNoMoreInteractions(mockQuery);
+    }
 }